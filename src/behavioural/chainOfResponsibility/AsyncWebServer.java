@@ -0,0 +1,112 @@
+package behavioural.chainOfResponsibility;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Async mode of the WebServer: each request runs its pipeline on a bounded executor instead of the caller's thread,
+ * so one slow request doesn't stall the rest. Stages returning a pending CompletionStage (i.e. I/O) release the
+ * worker thread until they complete.
+ *  maxInFlight: callers block on handle() while that many requests are still running (backpressure).
+ *  timeout: the future returned for a request not finished in time completes exceptionally with a TimeoutException.
+ *  The request keeps its in-flight permit until its pipeline actually completes, so timed out work still counts.
+ */
+public class AsyncWebServer implements AutoCloseable {
+    private WebServer server;
+    private ExecutorService executor;
+    private Semaphore inFlight;
+    private Duration timeout;
+    public AsyncWebServer(WebServer server, ExecutorService executor, int maxInFlight, Duration timeout) {
+        this.server = server;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeout = timeout;
+    }
+    public CompletableFuture<Boolean> handle(HttpRequest request) {
+        inFlight.acquireUninterruptibly();
+        try {
+            // The whole pipeline starts in the executor task, never on the caller's thread.
+            CompletableFuture<Boolean> work = CompletableFuture
+                    .supplyAsync(() -> server.getPipeline().handleAsync(request, executor), executor)
+                    .thenCompose(Function.identity());
+            work.whenComplete((handled, error) -> inFlight.release());
+            return work.copy().orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch(RuntimeException e) { // i.e. executor rejected the request
+            inFlight.release();
+            throw e;
+        }
+    }
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        var server = new WebServer(Pipeline.builder()
+                .add(new RemoteAuthenticator(null, Duration.ofMillis(2)))
+                .add(new PassThrough(null))
+                .add(new PassThrough(null))
+                .build());
+        int requests = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try(var async = new AsyncWebServer(server, Executors.newFixedThreadPool(threads), 10_000, Duration.ofSeconds(5))) {
+            long[] latencies = new long[requests];
+            var failed = new AtomicInteger();
+            var done = new CountDownLatch(requests);
+            long start = System.nanoTime();
+            for(int i = 0; i < requests; i++) {
+                int id = i;
+                long submitted = System.nanoTime();
+                async.handle(new HttpRequest("admin", "1234")).whenComplete((handled, error) -> {
+                    if(error != null) failed.incrementAndGet();
+                    latencies[id] = System.nanoTime() - submitted;
+                    done.countDown();
+                });
+            }
+            done.await();
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            System.out.printf("%d requests in %d ms (%.0f req/s), failed %d%n",
+                    requests, elapsed / 1_000_000, requests * 1e9 / elapsed, failed.get());
+            System.out.printf("latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", latencies[requests / 2] / 1e6,
+                    latencies[requests * 99 / 100] / 1e6, latencies[requests - 1] / 1e6);
+        }
+    }
+}
+
+/**
+ * Authenticator checking credentials against a remote service, simulated with a delay that doesn't block any thread.
+ */
+class RemoteAuthenticator extends Handler {
+    private static final ScheduledExecutorService remote = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "remote-auth");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Duration latency;
+    public RemoteAuthenticator(Handler next, Duration latency) {
+        super(next);
+        this.latency = latency;
+    }
+    @Override
+    public boolean doHandle(HttpRequest request) {
+        return doHandleAsync(request).toCompletableFuture().join();
+    }
+    @Override
+    public CompletionStage<Boolean> doHandleAsync(HttpRequest request) {
+        var response = new CompletableFuture<Boolean>();
+        remote.schedule(() -> response.complete(!(request.getUsername().equals("admin") && request.getPassword().equals("1234"))),
+                latency.toNanos(), TimeUnit.NANOSECONDS);
+        return response;
+    }
+}
@@ -1,5 +1,13 @@
 package behavioural.chainOfResponsibility;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
 /**
  * Chain Of Responsibility Pattern: solves the problem of need of create a chain (linked list) of objects to process a request.
  *
@@ -27,17 +35,30 @@ public class ChainOfResponsibility {
         // authenticator -> logger -> compressor
         var authenticator = new Authenticator(new Logger(new Compressor(null)));
         var server = new WebServer(authenticator);
-        server.handle(new HttpRequest("admin", "1234"));
+        var body = "{\"customer\": \"admin\"}, ".repeat(100).getBytes(StandardCharsets.UTF_8);
+        var request = new HttpRequest("admin", "1234", ByteBuffer.wrap(body), "application/json");
+        server.handle(request);
+        System.out.println("Body: " + body.length + " bytes -> " + request.getBody().remaining() + " bytes " + request.getContentEncoding());
     }
 }
 
 class WebServer {
-    private Handler handler;
+    private volatile Pipeline pipeline;
     public WebServer(Handler handler) {
-        this.handler = handler;
+        this(Pipeline.of(handler));
+    }
+    public WebServer(Pipeline pipeline) {
+        this.pipeline = pipeline;
     }
     public void handle(HttpRequest request) {
-        handler.handle(request);
+        pipeline.handle(request);
+    }
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+    // Readers never lock: in-flight requests keep walking the array they already read.
+    public void rebuild(Pipeline pipeline) {
+        this.pipeline = pipeline;
     }
 }
 
@@ -50,29 +71,113 @@ abstract class Handler {
         if(doHandle(request)) return;
         if(next != null) next.handle(request);
     }
+    Handler getNext() {
+        return next;
+    }
     public abstract boolean doHandle(HttpRequest request);
+    // I/O bound stages override this to complete later instead of blocking the calling thread.
+    public CompletionStage<Boolean> doHandleAsync(HttpRequest request) {
+        return CompletableFuture.completedFuture(doHandle(request));
+    }
 }
 
 class Authenticator extends Handler {
+    private CredentialStore credentials;
+    private SessionCache sessions;
     public Authenticator(Handler next) {
+        this(next, defaultCredentials(), new SessionCache(10_000, Duration.ofMinutes(30)));
+    }
+    public Authenticator(Handler next, CredentialStore credentials, SessionCache sessions) {
         super(next);
+        this.credentials = credentials;
+        this.sessions = sessions;
     }
+    private static CredentialStore defaultCredentials() {
+        var credentials = new HashedCredentialStore();
+        credentials.add("admin", "1234");
+        return credentials;
+    }
+    // A valid session token of the request's user skips the (slow) credential check, a successful check issues a new
+    // token for that user.
     @Override
     public boolean doHandle(HttpRequest request) {
         System.out.println("Authentication");
-        return !(request.getUsername().equals("admin") && request.getPassword().equals("1234"));
+        String token = request.getSessionToken();
+        if(token != null && sessions.isValid(token, request.getUsername())) return false;
+        if(!credentials.verify(request.getUsername(), request.getPassword())) return true;
+        request.setSessionToken(sessions.open(request.getUsername()));
+        return false;
     }
 }
 
+/**
+ * Gzips the request body. Small bodies and bodies already compressed (by content type or magic bytes) are skipped,
+ * as are bodies that don't get smaller.
+ *  Deflaters and direct scratch buffers are pooled per thread, the only allocation is the compressed body (exactly its
+ *  size) copied out of the scratch buffer: the request owns it, as it may outlive the handler (i.e. async pipelines).
+ */
 class Compressor extends Handler {
+    private static final int MIN_SIZE = 256;
+    private static final byte[] NO_INPUT = new byte[0];
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<CRC32> checksums = ThreadLocal.withInitial(CRC32::new);
+    private static final ThreadLocal<ByteBuffer[]> buffers = ThreadLocal.withInitial(() -> new ByteBuffer[] {ByteBuffer.allocateDirect(64 << 10)});
     public Compressor(Handler next) {
         super(next);
     }
     @Override
     public boolean doHandle(HttpRequest request) {
-        System.out.println("Log");
+        System.out.println("Compress");
+        ByteBuffer body = request.getBody();
+        if(body == null || request.getContentEncoding() != null || body.remaining() < MIN_SIZE) return false;
+        if(isCompressed(request.getContentType(), body)) return false;
+        ByteBuffer compressed = gzip(body);
+        if(compressed == null) return false;
+        request.setBody(ByteBuffer.allocate(compressed.remaining()).put(compressed).flip());
+        request.setContentEncoding("gzip");
         return false;
     }
+    private static boolean isCompressed(String contentType, ByteBuffer body) {
+        if(contentType != null && (contentType.startsWith("image/") && !contentType.startsWith("image/svg")
+                || contentType.startsWith("video/") || contentType.startsWith("audio/")
+                || contentType.endsWith("zip") || contentType.endsWith("gzip"))) return true;
+        int at = body.position();
+        int b0 = body.get(at) & 0xff, b1 = body.get(at + 1) & 0xff, b2 = body.get(at + 2) & 0xff, b3 = body.get(at + 3) & 0xff;
+        return b0 == 0x1f && b1 == 0x8b // gzip
+                || b0 == 'P' && b1 == 'K' && b2 == 3 && b3 == 4 // zip
+                || b0 == 0x89 && b1 == 'P' && b2 == 'N' && b3 == 'G' // png
+                || b0 == 0xff && b1 == 0xd8 && b2 == 0xff // jpeg
+                || b0 == 'G' && b1 == 'I' && b2 == 'F'; // gif
+    }
+    // Returns the thread's scratch buffer, or null when the gzipped body wouldn't be smaller than the original.
+    private static ByteBuffer gzip(ByteBuffer body) {
+        int size = body.remaining();
+        ByteBuffer[] buffer = buffers.get();
+        if(buffer[0].capacity() < size) buffer[0] = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        ByteBuffer out = buffer[0];
+        out.clear().limit(size);
+        out.put(GZIP_HEADER);
+        int start = body.position();
+        CRC32 crc = checksums.get();
+        crc.reset();
+        crc.update(body);
+        body.position(start);
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        while(!deflater.finished()) {
+            if(!out.hasRemaining()) break;
+            deflater.deflate(out);
+        }
+        deflater.setInput(NO_INPUT); // the deflater must not keep a reference to the body
+        body.position(start);
+        if(!deflater.finished() || out.remaining() < 8) return null;
+        out.putInt(Integer.reverseBytes((int) crc.getValue()));
+        out.putInt(Integer.reverseBytes(size));
+        return out.flip();
+    }
 }
 
 class Logger extends Handler {
@@ -81,7 +186,7 @@ class Logger extends Handler {
     }
     @Override
     public boolean doHandle(HttpRequest request) {
-        System.out.println("Compress");
+        System.out.println("Log");
         return false;
     }
 }
@@ -89,9 +194,18 @@ class Logger extends Handler {
 class HttpRequest {
     private String username;
     private String password;
+    private String sessionToken;
+    private ByteBuffer body;
+    private String contentType;
+    private String contentEncoding;
     public HttpRequest(String username, String password) {
+        this(username, password, null, null);
+    }
+    public HttpRequest(String username, String password, ByteBuffer body, String contentType) {
         this.username = username;
         this.password = password;
+        this.body = body;
+        this.contentType = contentType;
     }
     public String getUsername() {
         return username;
@@ -99,4 +213,25 @@ class HttpRequest {
     public String getPassword() {
         return password;
     }
+    public String getSessionToken() {
+        return sessionToken;
+    }
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+    public ByteBuffer getBody() {
+        return body;
+    }
+    public void setBody(ByteBuffer body) {
+        this.body = body;
+    }
+    public String getContentType() {
+        return contentType;
+    }
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
 }
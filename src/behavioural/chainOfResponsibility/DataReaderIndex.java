@@ -0,0 +1,95 @@
+package behavioural.chainOfResponsibility;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index over a DataReader chain: instead of asking every reader in turn (endsWith at each hop), the file name is sent
+ * straight to its reader.
+ *  Extensions are stored in a trie of reversed suffixes: the root is a hash on the last suffix (".gz"), its children
+ *  the suffix before it (".tar"), so compound extensions like ".tar.gz" win over ".gz" (longest match).
+ *  When two readers register the same extension the first one in the chain wins, like in the chain.
+ */
+public class DataReaderIndex {
+    private static class SuffixNode {
+        private DataReader reader;
+        private Map<String, SuffixNode> children;
+    }
+    private Map<String, SuffixNode> roots = new HashMap<>();
+    public static DataReaderIndex of(DataReader chain) {
+        var index = new DataReaderIndex();
+        for(DataReader reader = chain; reader != null; reader = reader.getNext())
+            index.add(reader);
+        return index;
+    }
+    public void add(DataReader reader) {
+        String extension = reader.getExtension();
+        if(!extension.startsWith("."))
+            throw new IllegalArgumentException("Extension must start with a dot: " + extension);
+        int end = extension.length();
+        int start = extension.lastIndexOf('.');
+        SuffixNode node = roots.computeIfAbsent(extension.substring(start), suffix -> new SuffixNode());
+        while(start > 0) {
+            end = start;
+            start = extension.lastIndexOf('.', end - 1);
+            if(node.children == null) node.children = new HashMap<>();
+            node = node.children.computeIfAbsent(extension.substring(start, end), suffix -> new SuffixNode());
+        }
+        if(node.reader == null) node.reader = reader;
+    }
+    public void read(String fileName) {
+        DataReader reader = find(fileName);
+        if(reader == null) throw new UnsupportedOperationException("File format not supported.");
+        reader.doRead(fileName);
+    }
+    private DataReader find(String fileName) {
+        int start = fileName.lastIndexOf('.');
+        if(start < 0) return null;
+        SuffixNode node = roots.get(fileName.substring(start));
+        if(node == null) return null;
+        DataReader match = node.reader;
+        while(node.children != null && start > 0) {
+            int end = start;
+            start = fileName.lastIndexOf('.', end - 1);
+            if(start < 0) break;
+            node = node.children.get(fileName.substring(start, end));
+            if(node == null) break;
+            if(node.reader != null) match = node.reader;
+        }
+        return match;
+    }
+
+    public static void main(String[] args) {
+        DataReaderIndex index = DataReaderFactory.getDataReaderIndex();
+        index.add(new GzipReader());
+        index.add(new TarGzReader());
+        index.read("data.xls");
+        index.read("data.numbers");
+        index.read("data.qbw");
+        index.read("data.tar.gz");
+        index.read("data.gz");
+        index.read("data.jpg");
+    }
+}
+
+class GzipReader extends DataReader {
+    @Override
+    protected String getExtension() {
+        return ".gz";
+    }
+    @Override
+    protected void doRead(String fileName) {
+        System.out.println("Reading data from a gzip file.");
+    }
+}
+
+class TarGzReader extends DataReader {
+    @Override
+    protected String getExtension() {
+        return ".tar.gz";
+    }
+    @Override
+    protected void doRead(String fileName) {
+        System.out.println("Reading data from a gzip tarball.");
+    }
+}
@@ -1,5 +1,9 @@
 package behavioural.chainOfResponsibility;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
 public class Exercise {
     public static void main(String[] args) {
         DataReader reader = DataReaderFactory.getDataReaderChain();
@@ -15,10 +19,15 @@ class DataReaderFactory {
         var excelReader = new ExcelReader();
         var numbersReader = new NumbersReader();
         var quickBooksReader = new QuickBooksReader();
+        var csvReader = new CsvReader();
         quickBooksReader.setNext(numbersReader);
         numbersReader.setNext(excelReader);
+        excelReader.setNext(csvReader);
         return quickBooksReader;
     }
+    public static DataReaderIndex getDataReaderIndex() {
+        return DataReaderIndex.of(getDataReaderChain());
+    }
 }
 
 abstract class DataReader {
@@ -26,6 +35,9 @@ abstract class DataReader {
     public void setNext(DataReader next) {
         this.next = next;
     }
+    DataReader getNext() {
+        return next;
+    }
     public void read(String fileName) {
         if(fileName.endsWith(getExtension())) {
             this.doRead(fileName);
@@ -34,6 +46,14 @@ abstract class DataReader {
         if(next != null) next.read(fileName);
         else throw new UnsupportedOperationException("File format not supported.");
     }
+    // Records are streamed from a memory-mapped file, see MappedRecordReader (the consumer is called concurrently).
+    public long stream(Path file, Consumer<String[]> records) throws IOException {
+        var reader = new MappedRecordReader(64 << 20, Runtime.getRuntime().availableProcessors());
+        return reader.read(file, getRecordFormat(), records);
+    }
+    protected RecordFormat getRecordFormat() {
+        throw new UnsupportedOperationException("Streaming not supported for " + getExtension() + " files.");
+    }
     protected abstract String getExtension();
     protected abstract void doRead(String fileName);
 }
@@ -0,0 +1,165 @@
+package behavioural.chainOfResponsibility;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Streams the records of a (multi-GB) file without loading it: the file is memory-mapped through a FileChannel in
+ * chunks of about chunkSize bytes, each chunk boundary moved forward to the end of a record ('\n'), and chunks are
+ * parsed in parallel.
+ *  Memory is bounded: a chunk is mapped once one of the parallelism parsers is free, so at most parallelism chunks
+ *  are in use, and records are handed to the consumer as they are parsed, never collected. A parsed chunk is unmapped
+ *  when its buffer is garbage collected (there's no public unmap).
+ *  The consumer is called from several threads and records of different chunks arrive in no particular order.
+ */
+public class MappedRecordReader {
+    private int chunkSize;
+    private int parallelism;
+    public MappedRecordReader(int chunkSize, int parallelism) {
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+    public long read(Path file, RecordFormat format, Consumer<String[]> consumer) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        CompletionService<Long> parsed = new ExecutorCompletionService<>(executor);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long records = 0;
+            int pending = 0;
+            for(long start = 0; start < size; ) {
+                if(pending == parallelism) {
+                    records += parsed.take().get();
+                    pending--;
+                }
+                long end = recordBoundary(channel, Math.min(start + chunkSize, size), size);
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                parsed.submit(() -> parse(chunk, format, consumer));
+                pending++;
+                start = end;
+            }
+            for(; pending > 0; pending--) records += parsed.take().get();
+            return records;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IOException("Failed to parse " + file, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    // Stops at the end of the file if it was truncated since its size was read.
+    private static long recordBoundary(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while(position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if(read < 0) return position;
+            for(int i = 0; i < read; i++)
+                if(buffer.get(i) == '\n') return position + i + 1;
+            position += read;
+        }
+        return size;
+    }
+    private static long parse(ByteBuffer chunk, RecordFormat format, Consumer<String[]> consumer) {
+        byte[] line = new byte[256];
+        int length = 0;
+        long records = 0;
+        while(chunk.hasRemaining()) {
+            byte b = chunk.get();
+            if(b == '\n') {
+                if(emit(line, length, format, consumer)) records++;
+                length = 0;
+                continue;
+            }
+            if(length == line.length) line = Arrays.copyOf(line, length * 2);
+            line[length++] = b;
+        }
+        if(emit(line, length, format, consumer)) records++;
+        return records;
+    }
+    private static boolean emit(byte[] line, int length, RecordFormat format, Consumer<String[]> consumer) {
+        if(length > 0 && line[length - 1] == '\r') length--;
+        if(length == 0) return false;
+        List<String> fields = new ArrayList<>();
+        int from = 0;
+        for(int i = 0; i <= length; i++) {
+            if(i < length && line[i] != format.getDelimiter()) continue;
+            fields.add(new String(line, from, i - from, StandardCharsets.UTF_8));
+            from = i + 1;
+        }
+        consumer.accept(fields.toArray(new String[0]));
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("records", ".csv");
+        try {
+            int lines = 1_000_000;
+            try(BufferedWriter writer = Files.newBufferedWriter(file)) {
+                for(int i = 0; i < lines; i++)
+                    writer.write(i + ",customer-" + i + "," + (i % 100) + "\n");
+            }
+            var reader = new MappedRecordReader(1 << 20, Runtime.getRuntime().availableProcessors());
+            var amounts = new LongAdder();
+            long start = System.nanoTime();
+            long records = reader.read(file, RecordFormat.CSV, record -> amounts.add(Long.parseLong(record[2])));
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d records (%d MB) in %d ms, sum of amounts %d (expected %d)%n", records,
+                    Files.size(file) >> 20, elapsed / 1_000_000, amounts.sum(), (long) lines / 100 * 4950);
+            new CsvReader().read(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
+
+class RecordFormat {
+    public static final RecordFormat CSV = new RecordFormat((byte) ',');
+    public static final RecordFormat TSV = new RecordFormat((byte) '\t');
+    private byte delimiter;
+    public RecordFormat(byte delimiter) {
+        this.delimiter = delimiter;
+    }
+    public byte getDelimiter() {
+        return delimiter;
+    }
+}
+
+class CsvReader extends DataReader {
+    @Override
+    protected String getExtension() {
+        return ".csv";
+    }
+    @Override
+    protected RecordFormat getRecordFormat() {
+        return RecordFormat.CSV;
+    }
+    @Override
+    protected void doRead(String fileName) {
+        try {
+            long records = stream(Path.of(fileName), record -> {});
+            System.out.println("Reading data from a CSV file: " + records + " records.");
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
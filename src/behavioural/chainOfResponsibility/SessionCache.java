@@ -0,0 +1,155 @@
+package behavioural.chainOfResponsibility;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Bounded cache of verified session tokens for the Authenticator: the slow credential check runs once per login and
+ * the token it issues is enough for the following requests, until it expires (ttl) or is evicted (capacity, least
+ * recently used first).
+ *  A token is bound to the user it was issued to: it's only valid for requests of that user.
+ *  Counters (hits, misses, evictions) are exposed to size the cache under load.
+ */
+public class SessionCache {
+    private static final SecureRandom random = new SecureRandom();
+    private int capacity;
+    private long ttlNanos;
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder evictions = new LongAdder();
+    private Map<String, Session> sessions;
+    private static class Session {
+        private final String username;
+        private final long expiresAt;
+        private Session(String username, long expiresAt) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+    }
+    public SessionCache(int capacity, Duration ttl) {
+        this.capacity = capacity;
+        this.ttlNanos = ttl.toNanos();
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                if(size() <= SessionCache.this.capacity) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+    public String open(String username) {
+        Objects.requireNonNull(username);
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        synchronized(this) {
+            sessions.put(token, new Session(username, System.nanoTime() + ttlNanos));
+        }
+        return token;
+    }
+    // A token presented for another user is rejected (but stays valid for its own user).
+    public synchronized boolean isValid(String token, String username) {
+        Session session = sessions.get(token);
+        if(session == null || !session.username.equals(username)) {
+            misses.increment();
+            return false;
+        }
+        if(session.expiresAt - System.nanoTime() < 0) {
+            sessions.remove(token);
+            evictions.increment();
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+    public synchronized void close(String token) {
+        sessions.remove(token);
+    }
+    public long getHits() {
+        return hits.sum();
+    }
+    public long getMisses() {
+        return misses.sum();
+    }
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    public static void main(String[] args) {
+        var credentials = new HashedCredentialStore();
+        credentials.add("admin", "1234");
+        credentials.add("guest", "guest");
+        var sessions = new SessionCache(1_000, Duration.ofMinutes(30));
+        var authenticator = new Authenticator(null, credentials, sessions);
+
+        var login = new HttpRequest("admin", "1234");
+        long start = System.nanoTime();
+        authenticator.doHandle(login);
+        System.out.printf("Login verified in %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        String token = login.getSessionToken();
+        for(int i = 0; i < 3; i++) {
+            var request = new HttpRequest("admin", null);
+            request.setSessionToken(token);
+            start = System.nanoTime();
+            authenticator.doHandle(request);
+            System.out.printf("Session token verified in %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        }
+        System.out.println("Wrong password rejected: " + authenticator.doHandle(new HttpRequest("admin", "4321")));
+        var guestLogin = new HttpRequest("guest", "guest");
+        authenticator.doHandle(guestLogin);
+        var impersonation = new HttpRequest("admin", "wrong");
+        impersonation.setSessionToken(guestLogin.getSessionToken());
+        System.out.println("Guest token used as admin rejected: " + authenticator.doHandle(impersonation));
+        System.out.printf("hits %d, misses %d, evictions %d%n", sessions.getHits(), sessions.getMisses(), sessions.getEvictions());
+    }
+}
+
+interface CredentialStore {
+    boolean verify(String username, String password);
+}
+
+/**
+ * Stores a random salt and a PBKDF2 hash per user (slow on purpose), hashes are compared in constant time.
+ */
+class HashedCredentialStore implements CredentialStore {
+    private static final SecureRandom random = new SecureRandom();
+    private static final int ITERATIONS = 120_000;
+    private static final byte[] UNKNOWN_USER_SALT = new byte[16];
+    private Map<String, byte[][]> users = new ConcurrentHashMap<>();
+    public void add(String username, String password) {
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        users.put(username, new byte[][] {salt, hash(password, salt)});
+    }
+    @Override
+    public boolean verify(String username, String password) {
+        if(username == null || password == null) return false;
+        byte[][] user = users.get(username);
+        // Unknown users are hashed too, so the response time doesn't reveal which usernames exist.
+        byte[] hash = hash(password, user != null ? user[0] : UNKNOWN_USER_SALT);
+        return user != null && MessageDigest.isEqual(hash, user[1]);
+    }
+    private static byte[] hash(String password, byte[] salt) {
+        try {
+            var spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, 256);
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
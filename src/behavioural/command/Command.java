@@ -40,10 +40,28 @@ interface ICommand {
 class Button {
     private String label;
     private ICommand command;
+    private CommandJournal journal;
+    private CommandDispatcher dispatcher;
     public Button(ICommand command) {
+        this(command, null, null);
+    }
+    public Button(ICommand command, CommandJournal journal) {
+        this(command, journal, null);
+    }
+    public Button(ICommand command, CommandJournal journal, CommandDispatcher dispatcher) {
         this.command = command;
+        this.journal = journal;
+        this.dispatcher = dispatcher;
+    }
+    public void click() {
+        if(dispatcher != null) dispatcher.dispatch(command, this::execute);
+        else execute();
+    }
+    // Write-ahead: the command is durable in the journal before it executes.
+    private void execute() {
+        if(journal != null) journal.append(command);
+        command.execute();
     }
-    public void click() { command.execute(); }
     public String getLabel() {
         return label;
     }
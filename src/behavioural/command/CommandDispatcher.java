@@ -0,0 +1,131 @@
+package behavioural.command;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatch mode for the Button (Invoker): commands are executed on a background executor and a burst of dispatches
+ * of the same command is coalesced, a command already pending is not queued again.
+ *  IMMEDIATE: executes as soon as possible.
+ *  DEBOUNCE: executes once no dispatch of the command happened for the interval (each dispatch restarts it).
+ *  THROTTLE: executes at most once per interval, a dispatch during the interval is delayed to its end.
+ *  Counters show how many executions were saved (coalesced).
+ */
+public class CommandDispatcher implements AutoCloseable {
+    public enum Policy { IMMEDIATE, DEBOUNCE, THROTTLE }
+    private Policy policy;
+    private long intervalNanos;
+    private ExecutorService executor;
+    private ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "command-dispatcher-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Command -> its scheduled dispatch (null once handed to the executor), until it starts executing.
+    private Map<ICommand, ScheduledFuture<?>> pending = new IdentityHashMap<>();
+    private Map<ICommand, Long> lastExecution = new IdentityHashMap<>();
+    private LongAdder requested = new LongAdder();
+    private LongAdder executed = new LongAdder();
+    private LongAdder coalesced = new LongAdder();
+    public CommandDispatcher(Policy policy, Duration interval, ExecutorService executor) {
+        this.policy = policy;
+        this.intervalNanos = interval.toNanos();
+        this.executor = executor;
+    }
+    public void dispatch(ICommand command) {
+        dispatch(command, command::execute);
+    }
+    // Runs execution instead of the command (i.e. a Button journaling it first), coalesced by command: dispatches of
+    // the same command from different invokers are one burst.
+    public synchronized void dispatch(ICommand command, Runnable execution) {
+        requested.increment();
+        if(pending.containsKey(command)) {
+            coalesced.increment();
+            ScheduledFuture<?> scheduled = pending.get(command);
+            if(policy == Policy.DEBOUNCE && scheduled != null && scheduled.cancel(false))
+                pending.put(command, schedule(command, execution, intervalNanos));
+            return;
+        }
+        long delay = 0;
+        if(policy == Policy.DEBOUNCE) delay = intervalNanos;
+        else if(policy == Policy.THROTTLE && lastExecution.containsKey(command))
+            delay = lastExecution.get(command) + intervalNanos - System.nanoTime();
+        if(delay > 0) pending.put(command, schedule(command, execution, delay));
+        else {
+            pending.put(command, null);
+            executor.execute(() -> run(command, execution));
+        }
+    }
+    private ScheduledFuture<?> schedule(ICommand command, Runnable execution, long delayNanos) {
+        return timer.schedule(() -> {
+            synchronized(this) {
+                pending.put(command, null);
+            }
+            executor.execute(() -> run(command, execution));
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+    private void run(ICommand command, Runnable execution) {
+        synchronized(this) {
+            pending.remove(command);
+            lastExecution.put(command, System.nanoTime());
+        }
+        executed.increment();
+        execution.run();
+    }
+    public long getRequested() {
+        return requested.sum();
+    }
+    public long getExecuted() {
+        return executed.sum();
+    }
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+    // Waits for the pending commands, stops waiting (keeping the interrupt) if interrupted.
+    @Override
+    public void close() {
+        timer.shutdown();
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES); // scheduled commands still go to the executor
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch(InterruptedException e) {
+            executor.shutdown();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for(Policy policy : Policy.values()) {
+            var executions = new AtomicInteger();
+            ICommand refresh = () -> {
+                executions.incrementAndGet();
+                try {
+                    Thread.sleep(5); // expensive command
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            var dispatcher = new CommandDispatcher(policy, Duration.ofMillis(20), Executors.newSingleThreadExecutor());
+            // Two invokers of the same command (i.e. a toolbar button and a menu item) share its bursts.
+            var button = new Button(refresh, null, dispatcher);
+            var menuItem = new Button(refresh, null, dispatcher);
+            for(int click = 0; click < 500; click++) {
+                (click % 2 == 0 ? button : menuItem).click();
+                if(click % 50 == 0) Thread.sleep(30);
+            }
+            Thread.sleep(100);
+            dispatcher.close();
+            System.out.printf("%s: %d clicks, %d executions, %d saved%n", policy, dispatcher.getRequested(),
+                    dispatcher.getExecuted(), dispatcher.getCoalesced());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package behavioural.command;
+
+/**
+ * Undo/redo history of commands with bounded memory: entries are kept in a fixed-capacity ring buffer and the oldest
+ * are evicted when the capacity or the byte budget (sum of UndoableCommand.sizeInBytes()) is exceeded.
+ *  A command merging into the previous one (i.e. many character inserts become one entry) doesn't add an entry,
+ *  so memory and undo latency stay flat over long sessions.
+ *  Executing a new command discards the commands that could be redone.
+ */
+public class CommandHistory {
+    private UndoableCommand[] entries;
+    private long[] sizes;
+    private long byteBudget;
+    private int first;
+    private int count;
+    private int done;
+    private long bytes;
+    private long evictions;
+    public CommandHistory(int capacity, long byteBudget) {
+        this.entries = new UndoableCommand[capacity];
+        this.sizes = new long[capacity];
+        this.byteBudget = byteBudget;
+    }
+    public void execute(UndoableCommand command) {
+        command.execute();
+        push(command);
+    }
+    // For commands already executed.
+    public void push(UndoableCommand command) {
+        while(count > done) remove(index(count - 1));
+        if(done > 0) {
+            int top = index(done - 1);
+            if(entries[top].mergeWith(command)) {
+                bytes += entries[top].sizeInBytes() - sizes[top];
+                sizes[top] = entries[top].sizeInBytes();
+                evictOverBudget();
+                return;
+            }
+        }
+        if(count == entries.length) evictOldest();
+        int slot = index(count);
+        entries[slot] = command;
+        sizes[slot] = command.sizeInBytes();
+        bytes += sizes[slot];
+        count++;
+        done++;
+        evictOverBudget();
+    }
+    public boolean undo() {
+        if(done == 0) return false;
+        entries[index(done - 1)].unexecute();
+        done--;
+        return true;
+    }
+    public boolean redo() {
+        if(done == count) return false;
+        entries[index(done)].execute();
+        done++;
+        return true;
+    }
+    private void evictOverBudget() {
+        while(bytes > byteBudget && count > 1) evictOldest();
+    }
+    private void evictOldest() {
+        bytes -= sizes[first];
+        entries[first] = null;
+        first = index(1);
+        count--;
+        done--;
+        evictions++;
+    }
+    private void remove(int slot) {
+        bytes -= sizes[slot];
+        entries[slot] = null;
+        count--;
+    }
+    private int index(int offset) {
+        return (first + offset) % entries.length;
+    }
+    public int size() {
+        return count;
+    }
+    public long getBytes() {
+        return bytes;
+    }
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public static void main(String[] args) {
+        var document = new TextDocument();
+        var history = new CommandHistory(1_000, 64 << 10);
+        String sentence = "The quick brown fox jumps over the lazy dog. ";
+        long start = System.nanoTime();
+        for(int i = 0; i < 2_000_000; i++) {
+            char c = sentence.charAt(i % sentence.length());
+            history.execute(new InsertTextCommand(document, document.length(), String.valueOf(c)));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("2M inserts in %d ms: %d entries, %d bytes, %d evicted%n",
+                elapsed / 1_000_000, history.size(), history.getBytes(), history.getEvictions());
+        start = System.nanoTime();
+        history.undo();
+        System.out.printf("Undo in %.3f ms: ...%s%n", (System.nanoTime() - start) / 1e6, document.getText().substring(document.length() - 10));
+        history.redo();
+        System.out.println("Redo: ..." + document.getText().substring(document.length() - 10));
+    }
+}
+
+interface UndoableCommand extends ICommand {
+    void unexecute();
+    // Estimated memory retained by the command, for the history's byte budget.
+    long sizeInBytes();
+    // Absorbs next (already executed) into this command if they're consecutive commands of the same kind.
+    default boolean mergeWith(UndoableCommand next) {
+        return false;
+    }
+}
+
+class TextDocument {
+    private StringBuilder text = new StringBuilder();
+    public void insert(int position, String value) {
+        text.insert(position, value);
+    }
+    public void delete(int position, int length) {
+        text.delete(position, position + length);
+    }
+    public int length() {
+        return text.length();
+    }
+    public String getText() {
+        return text.toString();
+    }
+}
+
+class InsertTextCommand implements UndoableCommand {
+    private static final int MAX_MERGED_LENGTH = 64;
+    private TextDocument document;
+    private int position;
+    private StringBuilder text;
+    public InsertTextCommand(TextDocument document, int position, String text) {
+        this.document = document;
+        this.position = position;
+        this.text = new StringBuilder(text);
+    }
+    @Override
+    public void execute() {
+        document.insert(position, text.toString());
+    }
+    @Override
+    public void unexecute() {
+        document.delete(position, text.length());
+    }
+    @Override
+    public long sizeInBytes() {
+        return 48 + 2L * text.capacity();
+    }
+    // Typing merges into one entry per word, like editors undo.
+    @Override
+    public boolean mergeWith(UndoableCommand next) {
+        if(!(next instanceof InsertTextCommand insert) || insert.document != document) return false;
+        if(insert.position != position + text.length() || text.length() + insert.text.length() > MAX_MERGED_LENGTH) return false;
+        if(text.charAt(text.length() - 1) == ' ') return false;
+        text.append(insert.text);
+        return true;
+    }
+}
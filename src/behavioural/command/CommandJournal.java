@@ -0,0 +1,346 @@
+package behavioural.command;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of executed commands, so they can be replayed after a crash (commands can be persisted).
+ *  Commands are written as CommandEnvelope records to memory-mapped segment files (segment-[first sequence].log).
+ *  Group commit: append() returns once its record is durable, a single flusher thread forces the segment for every
+ *  record written since its last fsync, so many concurrent commands share one fsync.
+ *  If an fsync fails, the waiting and later appends throw it (the records written may not be durable).
+ *  A full segment is forced, closed and a new one started (rolling), compact() deletes the segments already covered by a
+ *  snapshot of the state.
+ * Record: length:int, crc32:int, body (sequence, timestamp, type, payload). A zero length marks the end of a segment.
+ */
+public class CommandJournal implements AutoCloseable {
+    private static class Segment {
+        private Path path;
+        private long firstSequence;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+    }
+    private Path directory;
+    private int segmentSize;
+    private List<Segment> segments = new ArrayList<>();
+    private Segment current;
+    private long nextSequence = 1;
+    private long written;
+    private long durable;
+    private long syncs;
+    private IOException flushFailure;
+    private boolean closed;
+    private Thread flusher;
+    public CommandJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        try(Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().matches("segment-\\d{20}\\.log"))
+                    .sorted(Comparator.comparing(Path::getFileName))
+                    .forEach(this::addSegment);
+        }
+        if(segments.isEmpty()) roll();
+        else recover(segments.get(segments.size() - 1));
+        written = durable = nextSequence - 1;
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    private void addSegment(Path path) {
+        var segment = new Segment();
+        segment.path = path;
+        String name = path.getFileName().toString();
+        segment.firstSequence = Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+        segments.add(segment);
+    }
+    // Opens the last segment and moves to the end of its last valid record (a torn write is discarded).
+    private void recover(Segment segment) throws IOException {
+        open(segment);
+        nextSequence = segment.firstSequence;
+        segment.buffer.position(scan(segment.buffer.duplicate().clear(), envelope -> nextSequence = envelope.getSequence() + 1));
+        current = segment;
+    }
+    private void open(Segment segment) throws IOException {
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, segment.channel.size()));
+    }
+    // The old segment is unmapped (left to the GC) and closed, replay() maps it again.
+    private void roll() throws IOException {
+        if(current != null) {
+            current.buffer.force();
+            syncs++;
+            current.channel.close();
+            current.channel = null;
+            current.buffer = null;
+        }
+        var segment = new Segment();
+        segment.firstSequence = nextSequence;
+        segment.path = directory.resolve(String.format("segment-%020d.log", nextSequence));
+        open(segment);
+        segments.add(segment);
+        current = segment;
+    }
+    public long append(ICommand command) {
+        synchronized(this) {
+            if(closed) throw new IllegalStateException("Journal closed.");
+            if(flushFailure != null) throw new UncheckedIOException("Journal flush failed.", flushFailure);
+            long sequence = nextSequence;
+            byte[] body = CommandEnvelope.of(sequence, command).toBytes();
+            if(8 + body.length > segmentSize) throw new IllegalArgumentException("Command larger than a segment.");
+            try {
+                if(current.buffer.remaining() < 8 + body.length) roll();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            var crc = new CRC32();
+            crc.update(body);
+            MappedByteBuffer buffer = current.buffer;
+            buffer.putInt(body.length).putInt((int) crc.getValue()).put(body);
+            if(buffer.remaining() >= 4) buffer.putInt(buffer.position(), 0);
+            nextSequence++;
+            written = sequence;
+            notifyAll();
+            while(durable < sequence) {
+                if(flushFailure != null) throw new UncheckedIOException("Journal flush failed.", flushFailure);
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted before command " + sequence + " was durable.", e);
+                }
+            }
+            return sequence;
+        }
+    }
+    private void flushLoop() {
+        while(true) {
+            MappedByteBuffer buffer;
+            long target;
+            synchronized(this) {
+                while(written == durable && !closed) {
+                    try {
+                        wait();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                if(written == durable) return;
+                buffer = current.buffer;
+                target = written;
+            }
+            try {
+                buffer.force(); // records of older segments were forced when rolling
+            } catch(UncheckedIOException e) {
+                synchronized(this) {
+                    flushFailure = e.getCause();
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized(this) {
+                durable = target;
+                syncs++;
+                notifyAll();
+            }
+        }
+    }
+    public synchronized void replay(long fromSequence, Consumer<CommandEnvelope> consumer) throws IOException {
+        for(Segment segment : segments) {
+            if(segment.buffer == null) {
+                try(FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                    scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), envelope -> {
+                        if(envelope.getSequence() >= fromSequence) consumer.accept(envelope);
+                    });
+                }
+            } else {
+                scan(segment.buffer.duplicate().clear(), envelope -> {
+                    if(envelope.getSequence() >= fromSequence) consumer.accept(envelope);
+                });
+            }
+        }
+    }
+    // Returns the position after the last valid record.
+    private static int scan(ByteBuffer buffer, Consumer<CommandEnvelope> consumer) throws IOException {
+        var crc = new CRC32();
+        while(buffer.remaining() >= 8) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if(length <= 0 || length > buffer.remaining()) return start;
+            byte[] body = new byte[length];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if((int) crc.getValue() != checksum) return start;
+            consumer.accept(CommandEnvelope.fromBytes(body));
+        }
+        return buffer.position();
+    }
+    // Call after persisting a snapshot of the state up to this sequence: whole segments before it are deleted.
+    public synchronized void compact(long upToSequence) throws IOException {
+        while(segments.size() > 1 && segments.get(1).firstSequence <= upToSequence + 1) {
+            Segment segment = segments.remove(0);
+            if(segment.channel != null) segment.channel.close();
+            Files.delete(segment.path);
+        }
+    }
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+    public synchronized long getSyncCount() {
+        return syncs;
+    }
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(this) {
+            try {
+                current.buffer.force();
+            } finally {
+                for(Segment segment : segments)
+                    if(segment.channel != null) segment.channel.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        var service = new CustomerService() {
+            private AtomicInteger customers = new AtomicInteger(); // clicked from several threads
+            @Override
+            public void addCustomer() { customers.incrementAndGet(); }
+        };
+        int threads = 8, clicks = 5_000;
+        try(var journal = new CommandJournal(directory, 64 << 10)) {
+            var button = new Button(new AddCustomer(service), journal);
+            List<Thread> clickers = new ArrayList<>();
+            long start = System.nanoTime();
+            for(int i = 0; i < threads; i++) {
+                var clicker = new Thread(() -> {
+                    for(int click = 0; click < clicks; click++) button.click();
+                });
+                clicker.start();
+                clickers.add(clicker);
+            }
+            for(Thread clicker : clickers) clicker.join();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d commands journaled in %d ms with %d fsyncs (%d segments)%n", threads * clicks,
+                    elapsed / 1_000_000, journal.getSyncCount(), journal.getSegmentCount());
+        }
+        try(var journal = new CommandJournal(directory, 64 << 10)) {
+            var recovered = new CustomerService() {
+                private int customers;
+                @Override
+                public void addCustomer() { customers++; }
+            };
+            journal.replay(1, envelope -> new AddCustomer(recovered).execute());
+            System.out.println("Customers after replay: " + recovered.customers + " (before crash " + service.customers.get() + ")");
+            journal.compact(recovered.customers);
+            System.out.println("Segments after compaction: " + journal.getSegmentCount());
+        }
+        try(Stream<Path> files = Files.list(directory)) {
+            for(Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+}
+
+/**
+ * A command as written to the journal: serializable commands carry their state in the payload, for the others the
+ * type is enough to rebuild them on replay.
+ */
+class CommandEnvelope {
+    private long sequence;
+    private long timestamp;
+    private String type;
+    private byte[] payload;
+    public CommandEnvelope(long sequence, long timestamp, String type, byte[] payload) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.payload = payload;
+    }
+    public static CommandEnvelope of(long sequence, ICommand command) {
+        byte[] payload = new byte[0];
+        if(command instanceof Serializable) {
+            var bytes = new ByteArrayOutputStream();
+            try(var out = new ObjectOutputStream(bytes)) {
+                out.writeObject(command);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            payload = bytes.toByteArray();
+        }
+        return new CommandEnvelope(sequence, System.currentTimeMillis(), command.getClass().getName(), payload);
+    }
+    public ICommand toCommand() {
+        if(payload.length == 0) throw new IllegalStateException(type + " is not serializable, rebuild it from its type.");
+        try(var in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (ICommand) in.readObject();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } catch(ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    public byte[] toBytes() {
+        var bytes = new ByteArrayOutputStream(64 + payload.length);
+        try(var out = new DataOutputStream(bytes)) {
+            out.writeLong(sequence);
+            out.writeLong(timestamp);
+            out.writeUTF(type);
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    public static CommandEnvelope fromBytes(byte[] bytes) throws IOException {
+        try(var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long sequence = in.readLong();
+            long timestamp = in.readLong();
+            String type = in.readUTF();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new CommandEnvelope(sequence, timestamp, type, payload);
+        }
+    }
+    public long getSequence() {
+        return sequence;
+    }
+    public long getTimestamp() {
+        return timestamp;
+    }
+    public String getType() {
+        return type;
+    }
+}
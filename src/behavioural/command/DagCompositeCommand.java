@@ -0,0 +1,127 @@
+package behavioural.command;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Composite command whose children declare the commands they depend on, so they are run as a DAG on a ForkJoinPool:
+ * a command starts once all its dependencies finished, independent branches run concurrently.
+ *  Cycles (or dependencies never added) are detected before anything runs.
+ *  Fail fast: when a command fails its dependents are cancelled (never run), execute() waits for the commands already
+ *  running and rethrows the first failure.
+ *  CompositeCommand is still the default, running its commands in order on the caller's thread.
+ */
+public class DagCompositeCommand implements ICommand {
+    private List<ICommand> commands = new ArrayList<>();
+    private Map<ICommand, List<ICommand>> dependencies = new IdentityHashMap<>();
+    private ForkJoinPool pool;
+    public DagCompositeCommand() {
+        this(ForkJoinPool.commonPool());
+    }
+    public DagCompositeCommand(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    public void add(ICommand command, ICommand... dependsOn) {
+        if(dependencies.containsKey(command)) throw new IllegalArgumentException("Command already added: " + command);
+        commands.add(command);
+        dependencies.put(command, new ArrayList<>(List.of(dependsOn)));
+    }
+    public void addDependency(ICommand command, ICommand dependsOn) {
+        List<ICommand> commandDependencies = dependencies.get(command);
+        if(commandDependencies == null) throw new IllegalArgumentException("Command not added: " + command);
+        commandDependencies.add(dependsOn);
+    }
+    @Override
+    public void execute() {
+        var failure = new AtomicReference<Throwable>();
+        Map<ICommand, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+        for(ICommand command : topologicalOrder()) {
+            List<ICommand> commandDependencies = dependencies.get(command);
+            CompletableFuture<?> ready = CompletableFuture.allOf(commandDependencies.stream()
+                    .map(futures::get).toArray(CompletableFuture[]::new));
+            CompletableFuture<Void> future = ready.thenRunAsync(() -> {
+                try {
+                    command.execute();
+                } catch(RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+            }, pool);
+            futures.put(command, future);
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+        } catch(CompletionException e) {
+            Throwable cause = failure.get() != null ? failure.get() : e.getCause();
+            if(cause instanceof RuntimeException runtime) throw runtime;
+            if(cause instanceof Error error) throw error;
+            throw e;
+        }
+    }
+    // Kahn's algorithm: commands left with unresolved dependencies are part of a cycle.
+    private List<ICommand> topologicalOrder() {
+        Map<ICommand, Integer> pending = new IdentityHashMap<>();
+        Map<ICommand, List<ICommand>> dependents = new IdentityHashMap<>();
+        for(ICommand command : commands) {
+            for(ICommand dependency : dependencies.get(command)) {
+                if(!dependencies.containsKey(dependency))
+                    throw new IllegalStateException("Dependency not added to the composite: " + dependency);
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(command);
+            }
+            pending.put(command, dependencies.get(command).size());
+        }
+        Deque<ICommand> ready = new ArrayDeque<>();
+        for(ICommand command : commands)
+            if(pending.get(command) == 0) ready.add(command);
+        List<ICommand> order = new ArrayList<>();
+        while(!ready.isEmpty()) {
+            ICommand command = ready.poll();
+            order.add(command);
+            for(ICommand dependent : dependents.getOrDefault(command, List.of()))
+                if(pending.merge(dependent, -1, Integer::sum) == 0) ready.add(dependent);
+        }
+        if(order.size() < commands.size()) throw new IllegalStateException("Cycle between commands.");
+        return order;
+    }
+
+    public static void main(String[] args) {
+        ICommand load = () -> System.out.println("Load images");
+        ICommand resize = new Resize();
+        ICommand blackAndWhite = new BlackAndWhiteCommand();
+        ICommand save = () -> System.out.println("Save images");
+        var composite = new DagCompositeCommand();
+        composite.add(load);
+        composite.add(resize, load);
+        composite.add(blackAndWhite, load);
+        composite.add(save, resize, blackAndWhite);
+        composite.execute();
+
+        var failing = new DagCompositeCommand();
+        ICommand broken = () -> { throw new IllegalStateException("Image not found"); };
+        failing.add(broken);
+        failing.add(save, broken);
+        try {
+            failing.execute();
+        } catch(IllegalStateException e) {
+            System.out.println("Failed: " + e.getMessage() + ", save was cancelled");
+        }
+
+        var cyclic = new DagCompositeCommand();
+        cyclic.add(resize);
+        cyclic.add(blackAndWhite, resize);
+        cyclic.addDependency(resize, blackAndWhite);
+        try {
+            cyclic.execute();
+        } catch(IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
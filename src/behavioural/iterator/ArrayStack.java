@@ -0,0 +1,185 @@
+package behavioural.iterator;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stack backed by a growable array instead of a Node per push: no allocation per element (besides growing) and
+ * iteration walks contiguous memory. Same Iterable contract as Stack, iterating from the top.
+ *  IntStack and LongStack store primitives without boxing, their forEach() doesn't allocate.
+ */
+public class ArrayStack<T> implements Iterable<T> {
+    private Object[] elements = new Object[16];
+    private int size;
+    public void push(T val) {
+        if(size == elements.length) elements = Arrays.copyOf(elements, size * 2);
+        elements[size++] = val;
+    }
+    @SuppressWarnings("unchecked")
+    public T pop() {
+        if(size == 0) throw new EmptyStackException();
+        T val = (T) elements[--size];
+        elements[size] = null;
+        return val;
+    }
+    public int size() {
+        return size;
+    }
+    @Override
+    public java.util.Iterator<T> iterator() {
+        return new java.util.Iterator<>() {
+            private int next = size - 1;
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if(next < 0) throw new NoSuchElementException();
+                return (T) elements[next--];
+            }
+        };
+    }
+    // Splits by halving the index range: the top half goes to the new spliterator (it comes first in the order).
+    @Override
+    public Spliterator<T> spliterator() {
+        return new StackSpliterator(0, size);
+    }
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    private class StackSpliterator implements Spliterator<T> {
+        private int low;
+        private int high;
+        public StackSpliterator(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if(high <= low) return false;
+            action.accept((T) elements[--high]);
+            return true;
+        }
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            for(; high > low; high--) action.accept((T) elements[high - 1]);
+        }
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (low + high) >>> 1;
+            if(middle <= low) return null;
+            var top = new StackSpliterator(middle, high);
+            high = middle;
+            return top;
+        }
+        @Override
+        public long estimateSize() {
+            return high - low;
+        }
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = 5_000_000;
+        for(int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            Stack<Integer> linked = new Stack<>();
+            for(int i = 0; i < n; i++) linked.push(i);
+            long linkedPush = System.nanoTime() - start;
+            start = System.nanoTime();
+            long linkedSum = 0;
+            for(int val : linked) linkedSum += val;
+            long linkedIterate = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < n; i++) linked.pop();
+            long linkedPop = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ArrayStack<Integer> array = new ArrayStack<>();
+            for(int i = 0; i < n; i++) array.push(i);
+            long arrayPush = System.nanoTime() - start;
+            start = System.nanoTime();
+            long arraySum = 0;
+            for(int val : array) arraySum += val;
+            long arrayIterate = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < n; i++) array.pop();
+            long arrayPop = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            IntStack ints = new IntStack();
+            for(int i = 0; i < n; i++) ints.push(i);
+            long intPush = System.nanoTime() - start;
+            start = System.nanoTime();
+            long[] intSum = {0};
+            ints.forEach(val -> intSum[0] += val);
+            long intIterate = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < n; i++) ints.pop();
+            long intPop = System.nanoTime() - start;
+
+            if(linkedSum != arraySum || arraySum != intSum[0]) throw new AssertionError("Different sums.");
+            System.out.printf("round %d (ms)  push/iterate/pop  Stack %d/%d/%d  ArrayStack %d/%d/%d  IntStack %d/%d/%d%n", round,
+                    linkedPush / 1_000_000, linkedIterate / 1_000_000, linkedPop / 1_000_000,
+                    arrayPush / 1_000_000, arrayIterate / 1_000_000, arrayPop / 1_000_000,
+                    intPush / 1_000_000, intIterate / 1_000_000, intPop / 1_000_000);
+        }
+        ArrayStack<Integer> numbers = new ArrayStack<>();
+        for(int i = 1; i <= n; i++) numbers.push(i);
+        System.out.println("Parallel sum: " + numbers.stream().parallel().mapToLong(Integer::longValue).sum());
+        System.out.println("Order kept: " + numbers.stream().parallel().limit(3).toList());
+    }
+}
+
+class IntStack {
+    private int[] elements = new int[16];
+    private int size;
+    public void push(int val) {
+        if(size == elements.length) elements = Arrays.copyOf(elements, size * 2);
+        elements[size++] = val;
+    }
+    public int pop() {
+        if(size == 0) throw new EmptyStackException();
+        return elements[--size];
+    }
+    public int size() {
+        return size;
+    }
+    // From the top, like the stacks' iterators.
+    public void forEach(IntConsumer action) {
+        for(int i = size - 1; i >= 0; i--) action.accept(elements[i]);
+    }
+}
+
+class LongStack {
+    private long[] elements = new long[16];
+    private int size;
+    public void push(long val) {
+        if(size == elements.length) elements = Arrays.copyOf(elements, size * 2);
+        elements[size++] = val;
+    }
+    public long pop() {
+        if(size == 0) throw new EmptyStackException();
+        return elements[--size];
+    }
+    public int size() {
+        return size;
+    }
+    public void forEach(LongConsumer action) {
+        for(int i = size - 1; i >= 0; i--) action.accept(elements[i]);
+    }
+}
@@ -0,0 +1,188 @@
+package behavioural.iterator;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded BrowseHistory for millions of entries: urls are interned into a UrlTable (can be shared between histories)
+ * and the history only keeps their int ids in a ring buffer, the oldest entries are dropped when it's full.
+ *  hasVisited(url) first asks a Bloom filter (most urls never visited are answered without a lookup), then the exact
+ *  index: the number of entries of each url id in this history.
+ *  bytesPerEntry() reports the estimated memory per entry.
+ */
+public class CompactBrowseHistory {
+    private UrlTable table;
+    private int[] ring;
+    private int first;
+    private int size;
+    private int[] visits = new int[1024];
+    private long[] bloom;
+    private int removals;
+    public CompactBrowseHistory(int capacity) {
+        this(capacity, new UrlTable());
+    }
+    public CompactBrowseHistory(int capacity, UrlTable table) {
+        this.table = table;
+        this.ring = new int[capacity];
+        this.bloom = new long[Math.max(1, Integer.highestOneBit(capacity * 10 - 1) >> 5)];
+    }
+    public void push(String url) {
+        if(size == ring.length) {
+            int oldest = ring[first];
+            first = (first + 1) % ring.length;
+            size--;
+            remove(oldest);
+        }
+        int id = table.acquire(url);
+        if(id >= visits.length) visits = Arrays.copyOf(visits, Math.max(id + 1, visits.length * 2));
+        visits[id]++;
+        ring[(first + size) % ring.length] = id;
+        size++;
+        addToBloom(url);
+    }
+    public String pop() {
+        if(size == 0) throw new EmptyStackException();
+        size--;
+        int id = ring[(first + size) % ring.length];
+        String url = table.get(id);
+        remove(id);
+        return url;
+    }
+    private void remove(int id) {
+        visits[id]--;
+        table.release(id);
+        // A Bloom filter can't remove, it's rebuilt once as many entries were removed as it can hold.
+        if(++removals >= ring.length) rebuildBloom();
+    }
+    public boolean hasVisited(String url) {
+        if(!mightContain(url)) return false;
+        int id = table.find(url);
+        return id >= 0 && id < visits.length && visits[id] > 0;
+    }
+    public int size() {
+        return size;
+    }
+    public IIterator createIterator() {
+        return new IIterator() {
+            private int remaining = size;
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+            @Override
+            public String current() {
+                return table.get(ring[(first + remaining - 1) % ring.length]);
+            }
+            @Override
+            public void next() {
+                remaining--;
+            }
+            @Override
+            public int nextBatch(String[] dst, int max) {
+                int count = Math.min(max, remaining);
+                for(int i = 0; i < count; i++) dst[i] = table.get(ring[(first + remaining - 1 - i) % ring.length]);
+                remaining -= count;
+                return count;
+            }
+        };
+    }
+    public long memoryBytes() {
+        return 4L * ring.length + 4L * visits.length + 8L * bloom.length + table.memoryBytes();
+    }
+    public double bytesPerEntry() {
+        return size == 0 ? 0 : (double) memoryBytes() / size;
+    }
+    private void addToBloom(String url) {
+        int hash = url.hashCode();
+        int step = (hash >>> 16) | 1;
+        int mask = bloom.length * 64 - 1;
+        for(int i = 0; i < 4; i++) {
+            int bit = (hash * 0x9E3779B1 + i * step) & mask;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+    private boolean mightContain(String url) {
+        int hash = url.hashCode();
+        int step = (hash >>> 16) | 1;
+        int mask = bloom.length * 64 - 1;
+        for(int i = 0; i < 4; i++) {
+            int bit = (hash * 0x9E3779B1 + i * step) & mask;
+            if((bloom[bit >>> 6] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+    private void rebuildBloom() {
+        Arrays.fill(bloom, 0);
+        for(int i = 0; i < size; i++) addToBloom(table.get(ring[(first + i) % ring.length]));
+        removals = 0;
+    }
+
+    public static void main(String[] args) {
+        int entries = 2_000_000, distinct = 100_000;
+        var history = new CompactBrowseHistory(1_000_000);
+        long start = System.nanoTime();
+        for(int i = 0; i < entries; i++)
+            history.push("https://example.com/articles/" + (i * 7919L % distinct));
+        System.out.printf("%d pushes in %d ms, %d entries kept, %.1f bytes per entry%n", entries,
+                (System.nanoTime() - start) / 1_000_000, history.size(), history.bytesPerEntry());
+        // A linked BrowseHistory entry: Node (24) + its own String (24) + bytes (16 + ~35).
+        System.out.println("BrowseHistory would use about " + (24 + 24 + 16 + 35) + " bytes per entry");
+        start = System.nanoTime();
+        int visited = 0;
+        for(int i = 0; i < 1_000_000; i++)
+            if(history.hasVisited("https://example.com/articles/" + (i % (2 * distinct)))) visited++;
+        System.out.printf("1M hasVisited queries in %d ms, %d visited%n", (System.nanoTime() - start) / 1_000_000, visited);
+        IIterator iter = history.createIterator();
+        for(int i = 0; i < 3 && iter.hasNext(); i++, iter.next()) System.out.print(iter.current() + ",");
+        System.out.println();
+    }
+}
+
+/**
+ * Interned urls: each distinct url is stored once and identified by an int id, ids are reference counted and reused
+ * once no history refers to them anymore.
+ */
+class UrlTable {
+    private Map<String, Integer> ids = new HashMap<>();
+    private String[] urls = new String[1024];
+    private int[] references = new int[1024];
+    private IntStack freeIds = new IntStack();
+    private int nextId;
+    private long urlBytes;
+    public synchronized int acquire(String url) {
+        Integer id = ids.get(url);
+        if(id == null) {
+            id = freeIds.size() > 0 ? freeIds.pop() : nextId++;
+            if(id == urls.length) {
+                urls = Arrays.copyOf(urls, id * 2);
+                references = Arrays.copyOf(references, id * 2);
+            }
+            urls[id] = url;
+            ids.put(url, id);
+            urlBytes += 40 + url.length();
+        }
+        references[id]++;
+        return id;
+    }
+    public synchronized void release(int id) {
+        if(--references[id] > 0) return;
+        String url = urls[id];
+        ids.remove(url);
+        urls[id] = null;
+        urlBytes -= 40 + url.length();
+        freeIds.push(id);
+    }
+    public synchronized String get(int id) {
+        return urls[id];
+    }
+    public synchronized int find(String url) {
+        Integer id = ids.get(url);
+        return id == null ? -1 : id;
+    }
+    // Estimate: the url (String + bytes), its map entry (node + boxed id) and its slots in the arrays.
+    public synchronized long memoryBytes() {
+        return urlBytes + 48L * ids.size() + 8L * urls.length + 4L * freeIds.size();
+    }
+}
@@ -0,0 +1,163 @@
+package behavioural.iterator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free stack (Treiber stack) to share between producer and consumer threads: push and pop swap the head with a
+ * compare-and-set (VarHandle) and retry, backing off (spinning a random, growing time) when the CAS fails under
+ * contention.
+ *  Nodes are immutable once pushed, so an iterator walks the snapshot of the stack taken when it was created, it
+ *  never blocks writers and doesn't see their later changes (weakly consistent).
+ */
+public class ConcurrentStack<T> implements Iterable<T> {
+    private static final VarHandle HEAD;
+    static {
+        try {
+            HEAD = MethodHandles.lookup().findVarHandle(ConcurrentStack.class, "head", Node.class);
+        } catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    private static final int MAX_BACKOFF = 1 << 10;
+    private volatile Node<T> head;
+    public void push(T val) {
+        int backoff = 1;
+        while(true) {
+            Node<T> current = head;
+            var node = new Node<>(val, current);
+            if(HEAD.compareAndSet(this, current, node)) return;
+            backoff = backoff(backoff);
+        }
+    }
+    public T pop() {
+        Node<T> node = popNode();
+        if(node == null) throw new EmptyStackException();
+        return node.val;
+    }
+    // Returns null when the stack is empty.
+    public T poll() {
+        Node<T> node = popNode();
+        return node == null ? null : node.val;
+    }
+    private Node<T> popNode() {
+        int backoff = 1;
+        while(true) {
+            Node<T> current = head;
+            if(current == null) return null;
+            if(HEAD.compareAndSet(this, current, current.next)) return current;
+            backoff = backoff(backoff);
+        }
+    }
+    private static int backoff(int backoff) {
+        int spins = ThreadLocalRandom.current().nextInt(backoff);
+        for(int i = 0; i < spins; i++) Thread.onSpinWait();
+        return Math.min(backoff << 1, MAX_BACKOFF);
+    }
+    public boolean isEmpty() {
+        return head == null;
+    }
+    @Override
+    public java.util.Iterator<T> iterator() {
+        return new StackIterator<>(head);
+    }
+    private static class StackIterator<T> implements java.util.Iterator<T> {
+        private Node<T> head;
+        public StackIterator(Node<T> head) { this.head = head; }
+        @Override
+        public boolean hasNext() {
+            return head != null;
+        }
+        @Override
+        public T next() {
+            if(head == null) throw new NoSuchElementException();
+            T val = head.val;
+            head = head.next;
+            return val;
+        }
+    }
+    private static class Node<T> {
+        private final T val;
+        private final Node<T> next;
+        public Node(T val, Node<T> next) {
+            this.val = val;
+            this.next = next;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // Stress test: producers push distinct values while consumers pop them, every value must be popped once.
+        int producers = 4, consumers = 4, perProducer = 250_000, total = producers * perProducer;
+        var stack = new ConcurrentStack<Integer>();
+        var popped = new BitSet(total);
+        var duplicates = new AtomicLong();
+        var remaining = new AtomicLong(total);
+        List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; p++) {
+            int from = p * perProducer;
+            threads.add(new Thread(() -> {
+                for(int i = from; i < from + perProducer; i++) stack.push(i);
+            }));
+        }
+        for(int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                while(remaining.get() > 0) {
+                    Integer val = stack.poll();
+                    if(val == null) continue;
+                    remaining.decrementAndGet();
+                    synchronized(popped) {
+                        if(popped.get(val)) duplicates.incrementAndGet();
+                        popped.set(val);
+                    }
+                }
+            }));
+        }
+        for(Thread thread : threads) thread.start();
+        for(Thread thread : threads) thread.join();
+        System.out.printf("Stress: %d popped, %d duplicates, empty %b%n", popped.cardinality(), duplicates.get(), stack.isEmpty());
+
+        // Throughput: push/pop pairs split over 1 to 64 threads.
+        int operations = 2_000_000;
+        for(int round = 0; round < 2; round++) {
+            for(int threadCount = 1; threadCount <= 64; threadCount *= 2) {
+                var lockFree = new ConcurrentStack<Integer>();
+                long lockFreeNanos = run(threadCount, operations / threadCount, () -> { lockFree.push(1); lockFree.pop(); });
+                var synchronizedStack = new SynchronizedStack<Integer>(new Stack<>());
+                long synchronizedNanos = run(threadCount, operations / threadCount, () -> { synchronizedStack.push(1); synchronizedStack.pop(); });
+                if(round == 1) System.out.printf("%2d threads: lock-free %.1f Mops/s, synchronized %.1f Mops/s%n", threadCount,
+                        operations * 2e3 / lockFreeNanos, operations * 2e3 / synchronizedNanos);
+            }
+        }
+    }
+    private static long run(int threadCount, int pairsPerThread, Runnable pair) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < threadCount; t++)
+            threads.add(new Thread(() -> {
+                for(int i = 0; i < pairsPerThread; i++) pair.run();
+            }));
+        long start = System.nanoTime();
+        for(Thread thread : threads) thread.start();
+        for(Thread thread : threads) thread.join();
+        return System.nanoTime() - start;
+    }
+}
+
+class SynchronizedStack<T> {
+    private Stack<T> stack;
+    public SynchronizedStack(Stack<T> stack) {
+        this.stack = stack;
+    }
+    public synchronized void push(T val) {
+        stack.push(val);
+    }
+    public synchronized T pop() {
+        return stack.pop();
+    }
+}
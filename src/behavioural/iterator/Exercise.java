@@ -1,5 +1,11 @@
 package behavioural.iterator;
 
+import java.util.EmptyStackException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 // Note: now using java's Iterable and Iterator interfaces.
 public class Exercise {
     public static void main(String[] args) {
@@ -11,25 +17,44 @@ public class Exercise {
         System.out.println();
         stack.pop();
         for(String val : stack) System.out.print(val+",");
+        System.out.println();
+        Stack<Integer> numbers = new Stack<>();
+        for(int i = 1; i <= 1_000_000; i++) numbers.push(i);
+        System.out.println("Parallel sum: " + numbers.stream().parallel().mapToLong(Integer::longValue).sum());
     }
 }
 
 class Stack<T> implements Iterable<T> {
     private Node<T> head;
+    private int size;
     public void push(T val) {
         Node<T> node = new Node(val);
         if(head != null) node.next = head;
         head = node;
+        size++;
     }
     public T pop() {
+        if(head == null) throw new EmptyStackException();
         T val = head.val;
         head = head.next;
+        size--;
         return val;
     }
+    public int size() {
+        return size;
+    }
     @Override
     public java.util.Iterator<T> iterator() {
         return new StackIterator(head);
     }
+    // Sized, so parallel streams split it: each split copies a batch of nodes into an array.
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), size, Spliterator.ORDERED);
+    }
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
     private class StackIterator<T> implements java.util.Iterator<T> {
         private Node<T> head;
         public StackIterator(Node head) { this.head = head; }
@@ -1,5 +1,12 @@
 package behavioural.iterator;
 
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Iterator Pattern: solves the problem of iterating a data structure, abstracting away implementation detail.
  *
@@ -41,6 +48,8 @@ public class Iterator {
             System.out.print(iter.current()+",");
             iter.next();
         }
+        System.out.println();
+        System.out.println("Urls: " + history.stream().parallel().count());
     }
 }
 
@@ -48,6 +57,15 @@ interface IIterator {
     boolean hasNext();
     String current();
     void next();
+    // Bulk: copies up to max of the next elements into dst and moves past them, returns how many (0 at the end).
+    default int nextBatch(String[] dst, int max) {
+        int count = 0;
+        for(; count < max && hasNext(); count++, next()) dst[count] = current();
+        return count;
+    }
+    default void forEachRemaining(Consumer<? super String> action) {
+        for(; hasNext(); next()) action.accept(current());
+    }
 }
 
 class BrowseHistory {
@@ -59,17 +77,44 @@ class BrowseHistory {
         }
     }
     private Node head;
+    private int size;
     public void push(String url) {
         Node node = new Node(url);
         if(head != null) node.next = head;
         head = node;
+        size++;
     }
     public String pop() {
         String url = head.url;
         head = head.next;
+        size--;
         return url;
     }
+    public int size() {
+        return size;
+    }
     public IIterator createIterator() { return new StackIterator(head); }
+    // Sized, so parallel streams split it: each split copies a batch of urls into an array.
+    public Spliterator<String> spliterator() {
+        var urls = new java.util.Iterator<String>() {
+            private Node next = head;
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            @Override
+            public String next() {
+                if(next == null) throw new NoSuchElementException();
+                String url = next.url;
+                next = next.next;
+                return url;
+            }
+        };
+        return Spliterators.spliterator(urls, size, Spliterator.ORDERED);
+    }
+    public Stream<String> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
     private static class StackIterator implements IIterator {
         private Node head;
         public StackIterator(Node head) {
@@ -87,5 +132,18 @@ class BrowseHistory {
         public void next() {
             head = head.next;
         }
+        @Override
+        public int nextBatch(String[] dst, int max) {
+            Node node = head;
+            int count = 0;
+            for(; count < max && node != null; count++, node = node.next) dst[count] = node.url;
+            head = node;
+            return count;
+        }
+        @Override
+        public void forEachRemaining(Consumer<? super String> action) {
+            for(Node node = head; node != null; node = node.next) action.accept(node.url);
+            head = null;
+        }
     }
 }
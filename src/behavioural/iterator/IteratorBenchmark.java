@@ -0,0 +1,43 @@
+package behavioural.iterator;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-element cost of scanning histories with the three-call protocol (hasNext, current, next) against the bulk
+ * nextBatch() and forEachRemaining() of IIterator. Both history types are scanned, so the calls aren't monomorphic.
+ */
+public class IteratorBenchmark {
+    private static long checksum;
+    public static void main(String[] args) {
+        int entries = 1_000_000;
+        var history = new BrowseHistory();
+        var compactHistory = new CompactBrowseHistory(entries);
+        for(int i = 0; i < entries; i++) {
+            String url = "https://example.com/" + (i % 1000);
+            history.push(url);
+            compactHistory.push(url);
+        }
+        for(int round = 0; round < 10; round++) {
+            boolean report = round >= 8;
+            measure("BrowseHistory", history::createIterator, entries, report);
+            measure("CompactBrowseHistory", compactHistory::createIterator, entries, report);
+        }
+        System.out.println("Checksum: " + checksum);
+    }
+    private static void measure(String name, Supplier<IIterator> iterators, int entries, boolean report) {
+        String[] batch = new String[256];
+        long start = System.nanoTime();
+        for(IIterator iter = iterators.get(); iter.hasNext(); iter.next()) checksum += iter.current().length();
+        long threeCalls = System.nanoTime() - start;
+        start = System.nanoTime();
+        IIterator iter = iterators.get();
+        for(int count; (count = iter.nextBatch(batch, batch.length)) > 0; )
+            for(int i = 0; i < count; i++) checksum += batch[i].length();
+        long batched = System.nanoTime() - start;
+        start = System.nanoTime();
+        iterators.get().forEachRemaining(url -> checksum += url.length());
+        long forEach = System.nanoTime() - start;
+        if(report) System.out.printf("%s ns/element: three calls %.2f, nextBatch %.2f, forEachRemaining %.2f%n",
+                name, (double) threeCalls / entries, (double) batched / entries, (double) forEach / entries);
+    }
+}
@@ -0,0 +1,107 @@
+package behavioural.iterator;
+
+import java.util.EmptyStackException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable (persistent) stack: push and pop don't change the stack, they return a new version sharing the rest of
+ * the nodes (the tail) with the old one. Any version can be kept and iterated for as long as needed, so a snapshot
+ * is O(1) and never copies.
+ *  SnapshotStack holds the current version in an AtomicReference: writers swap it with a compare-and-set, readers
+ *  take snapshot() without locking and always see a consistent stack (i.e. for audit scans over a live stack).
+ */
+public final class PersistentStack<T> implements Iterable<T> {
+    private static final PersistentStack<?> EMPTY = new PersistentStack<>(null, null, 0);
+    private final T head;
+    private final PersistentStack<T> tail;
+    private final int size;
+    private PersistentStack(T head, PersistentStack<T> tail, int size) {
+        this.head = head;
+        this.tail = tail;
+        this.size = size;
+    }
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentStack<T> empty() {
+        return (PersistentStack<T>) EMPTY;
+    }
+    public PersistentStack<T> push(T val) {
+        return new PersistentStack<>(val, this, size + 1);
+    }
+    public PersistentStack<T> pop() {
+        if(size == 0) throw new EmptyStackException();
+        return tail;
+    }
+    public T peek() {
+        if(size == 0) throw new EmptyStackException();
+        return head;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    public int size() {
+        return size;
+    }
+    @Override
+    public java.util.Iterator<T> iterator() {
+        return new java.util.Iterator<>() {
+            private PersistentStack<T> next = PersistentStack.this;
+            @Override
+            public boolean hasNext() {
+                return next.size > 0;
+            }
+            @Override
+            public T next() {
+                if(next.size == 0) throw new NoSuchElementException();
+                T val = next.head;
+                next = next.tail;
+                return val;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        var stack = new SnapshotStack<Integer>();
+        var writer = new Thread(() -> {
+            for(int i = 0; i < 2_000_000; i++) {
+                stack.push(i);
+                if(i % 3 == 0) stack.pop();
+            }
+        });
+        writer.start();
+        int audits = 0, inconsistent = 0;
+        while(writer.isAlive()) {
+            PersistentStack<Integer> snapshot = stack.snapshot();
+            int count = 0;
+            for(int val : snapshot) count++;
+            if(count != snapshot.size()) inconsistent++;
+            audits++;
+        }
+        writer.join();
+        System.out.printf("%d audit scans while writing, %d inconsistent, final size %d%n", audits, inconsistent, stack.snapshot().size());
+        PersistentStack<String> v1 = PersistentStack.<String>empty().push("a").push("b");
+        PersistentStack<String> v2 = v1.push("c");
+        PersistentStack<String> v3 = v2.pop().pop();
+        System.out.println("v1 size " + v1.size() + ", v2 size " + v2.size() + ", v3 top " + v3.peek() + ", v2 shares v1: " + (v2.pop() == v1));
+    }
+}
+
+class SnapshotStack<T> implements Iterable<T> {
+    private AtomicReference<PersistentStack<T>> current = new AtomicReference<>(PersistentStack.empty());
+    public void push(T val) {
+        current.updateAndGet(stack -> stack.push(val));
+    }
+    public T pop() {
+        while(true) {
+            PersistentStack<T> stack = current.get();
+            if(current.compareAndSet(stack, stack.pop())) return stack.peek();
+        }
+    }
+    public PersistentStack<T> snapshot() {
+        return current.get();
+    }
+    @Override
+    public java.util.Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+}
@@ -0,0 +1,128 @@
+package behavioural.mediator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Mediator base class dispatching changed(control) through a table of handlers registered per control (keyed by
+ * identity), instead of an if/else chain over the controls: dispatch costs the same whatever the number of controls.
+ *  The table is copied on register(), so dispatching never locks.
+ *  Async mode: the setters of the controls (through post()) are marshalled onto a single-threaded event loop with a
+ *  bounded queue (producers block while it's full), so controls can be updated from worker threads: the state of the
+ *  controls is only written and read on the loop thread, and handlers run one at a time. Read the controls from another
+ *  thread after awaitIdle(), which also rethrows a failure of an update or handler.
+ */
+public abstract class DispatchingDialogBox extends DialogBox implements AutoCloseable {
+    private volatile Map<UIControl_, Runnable> handlers = new IdentityHashMap<>();
+    private EventLoop eventLoop;
+    protected DispatchingDialogBox() {}
+    protected DispatchingDialogBox(int queueCapacity) {
+        eventLoop = new EventLoop(queueCapacity);
+    }
+    protected synchronized void register(UIControl_ control, Runnable handler) {
+        Map<UIControl_, Runnable> copy = new IdentityHashMap<>(handlers);
+        copy.put(control, handler);
+        handlers = copy;
+    }
+    @Override
+    public void post(Runnable update) {
+        if(eventLoop == null || eventLoop.isLoopThread()) update.run();
+        else eventLoop.submit(update);
+    }
+    @Override
+    public void changed(UIControl_ control) {
+        post(() -> dispatch(control));
+    }
+    private void dispatch(UIControl_ control) {
+        Runnable handler = handlers.get(control);
+        if(handler != null) handler.run();
+    }
+    // Waits until the changes submitted so far were handled.
+    public void awaitIdle() throws InterruptedException {
+        if(eventLoop == null) return;
+        var idle = new CountDownLatch(1);
+        eventLoop.submit(idle::countDown);
+        idle.await();
+        RuntimeException failure = eventLoop.takeFailure();
+        if(failure != null) throw new IllegalStateException("Dialog box update failed.", failure);
+    }
+    @Override
+    public void close() {
+        if(eventLoop != null) eventLoop.close();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        try(var dialogBox = new ArticlesDialogBox(1_024)) {
+            List<Thread> workers = new ArrayList<>();
+            for(int i = 1; i <= 4; i++) {
+                int worker = i;
+                workers.add(new Thread(() -> dialogBox.simulateSelection("Article " + worker)));
+            }
+            for(Thread worker : workers) worker.start();
+            for(Thread worker : workers) worker.join();
+            dialogBox.awaitIdle();
+            dialogBox.printState();
+        }
+    }
+}
+
+class EventLoop implements AutoCloseable {
+    private BlockingQueue<Runnable> events;
+    private Thread thread;
+    private boolean running = true;
+    private RuntimeException failure;
+    public EventLoop(int capacity) {
+        events = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(this::run, "dialog-event-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    public void submit(Runnable event) {
+        try {
+            events.put(event);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting an event.", e);
+        }
+    }
+    public boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+    private void run() {
+        while(running) {
+            try {
+                events.take().run();
+            } catch(InterruptedException e) {
+                return;
+            } catch(RuntimeException e) {
+                failed(e);
+            }
+        }
+    }
+    // The loop keeps running: the first failure is kept (with the next ones suppressed) for takeFailure().
+    private synchronized void failed(RuntimeException e) {
+        if(failure == null) failure = e;
+        else failure.addSuppressed(e);
+    }
+    // Returns the failure of events run since the last call, if any.
+    public synchronized RuntimeException takeFailure() {
+        RuntimeException taken = failure;
+        failure = null;
+        return taken;
+    }
+    // Changes already submitted are handled before the loop stops.
+    @Override
+    public void close() {
+        submit(() -> running = false);
+        try {
+            thread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package behavioural.mediator;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Note: using Observer pattern to solve mediator problem.
@@ -19,10 +20,15 @@ interface EventHandler {
 
 class UiControl {
     private List<EventHandler> eventHandlers = new ArrayList<>();
+    private UiControls controls;
     public void addEventHandler(EventHandler handler) {
         eventHandlers.add(handler);
     }
+    void setControls(UiControls controls) {
+        this.controls = controls;
+    }
     protected void notifyEventHandlers() {
+        if(controls != null && controls.defer(eventHandlers)) return;
         for (var handler : eventHandlers)
             handler.handle();
     }
@@ -65,20 +71,33 @@ class Buttonx extends UiControl {
 }
 
 class SignUpDialogBox {
-    private Textbox usernameTextBox = new Textbox();
-    private Textbox passwordTextBox = new Textbox();
-    private Checkbox agreeToTermsCheckBox = new Checkbox();
-    private Buttonx signUpButton = new Buttonx();
+    private UiControls controls = new UiControls();
+    private Textbox usernameTextBox = controls.add(new Textbox());
+    private Textbox passwordTextBox = controls.add(new Textbox());
+    private Textbox confirmPasswordTextBox = controls.add(new Textbox());
+    private Checkbox agreeToTermsCheckBox = controls.add(new Checkbox());
+    private Buttonx signUpButton = controls.add(new Buttonx());
+    private FormValidator validator = new FormValidator();
     public SignUpDialogBox() {
-        usernameTextBox.addEventHandler(this::controlChanged);
-        passwordTextBox.addEventHandler(this::controlChanged);
-        agreeToTermsCheckBox.addEventHandler(this::controlChanged);
+        // A change only re-runs the rules reading the changed control, the button is updated when validity flips.
+        validator.add(() -> !usernameTextBox.isEmpty(), usernameTextBox);
+        validator.add(() -> !passwordTextBox.isEmpty(), passwordTextBox);
+        validator.add(() -> Objects.equals(passwordTextBox.getContent(), confirmPasswordTextBox.getContent()), passwordTextBox, confirmPasswordTextBox);
+        validator.add(agreeToTermsCheckBox::isChecked, agreeToTermsCheckBox);
+        validator.addEventHandler(this::controlChanged);
     }
     private void controlChanged() {
-        signUpButton.setEnabled(isFormValid());
+        signUpButton.setEnabled(validator.isValid());
     }
-    private boolean isFormValid() {
-        return !usernameTextBox.isEmpty() && !passwordTextBox.isEmpty() && agreeToTermsCheckBox.isChecked();
+    @SuppressWarnings("try")
+    public void fillForm(String username, String password, boolean agreeToTerms) {
+        try(var tx = controls.batch()) {
+            usernameTextBox.setContent(username);
+            passwordTextBox.setContent(password);
+            confirmPasswordTextBox.setContent(password);
+            agreeToTermsCheckBox.setChecked(agreeToTerms);
+        }
+        System.out.println("After filling the form: " + signUpButton.isEnabled());
     }
     public void simulateUserInteraction() {
         // Initially the button should be disabled
@@ -89,15 +108,20 @@ class SignUpDialogBox {
         // The user enters their password, the button is still disabled
         passwordTextBox.setContent("password");
         System.out.println("After setting the password: " + signUpButton.isEnabled());
+        // The user confirms their password, the button is still disabled
+        confirmPasswordTextBox.setContent("password");
+        System.out.println("After confirming the password: " + signUpButton.isEnabled());
         // The agrees to the terms, the button becomes enabled
         agreeToTermsCheckBox.setChecked(true);
         System.out.println("After agreeing to terms: " + signUpButton.isEnabled());
         // The user removes the password, the button becomes disabled
         passwordTextBox.setContent("");
         System.out.println("After removing the password: " + signUpButton.isEnabled());
-        // The user enters the password again, the button becomes enabled
-        passwordTextBox.setContent("password");
-        System.out.println("After re-setting the password: " + signUpButton.isEnabled());
+        // The user enters another password, the button stays disabled until it's confirmed
+        passwordTextBox.setContent("passw0rd");
+        System.out.println("After changing the password: " + signUpButton.isEnabled());
+        confirmPasswordTextBox.setContent("passw0rd");
+        System.out.println("After confirming the new password: " + signUpButton.isEnabled());
     }
 }
 
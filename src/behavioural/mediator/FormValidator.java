@@ -0,0 +1,70 @@
+package behavioural.mediator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Incremental form validation: each rule declares the controls it reads, and a change of a control only re-runs the
+ * rules reading it (i.e. "confirm password" re-runs when the password or the confirmation changes).
+ *  Rule results are kept in a bitset together with the number of failing rules, so isValid() is O(1) instead of
+ *  re-checking every field on every keystroke.
+ *  The validator is itself a UiControl: its event handlers are notified when the form becomes valid or invalid.
+ */
+public class FormValidator extends UiControl {
+    private List<BooleanSupplier> rules = new ArrayList<>();
+    private Map<UiControl, List<Integer>> rulesByInput = new IdentityHashMap<>();
+    private BitSet passing = new BitSet();
+    private int failing;
+    public void add(BooleanSupplier rule, UiControl... inputs) {
+        int index = rules.size();
+        rules.add(rule);
+        for(var input : inputs) {
+            rulesByInput.computeIfAbsent(input, control -> {
+                control.addEventHandler(() -> changed(control));
+                return new ArrayList<>();
+            }).add(index);
+        }
+        boolean wasValid = isValid();
+        if(rule.getAsBoolean()) passing.set(index);
+        else failing++;
+        if(wasValid != isValid()) notifyEventHandlers();
+    }
+    private void changed(UiControl control) {
+        boolean wasValid = isValid();
+        for(int index : rulesByInput.get(control)) {
+            boolean passes = rules.get(index).getAsBoolean();
+            if(passes == passing.get(index)) continue;
+            passing.set(index, passes);
+            failing += passes ? -1 : 1;
+        }
+        if(wasValid != isValid()) notifyEventHandlers();
+    }
+    public boolean isValid() {
+        return failing == 0;
+    }
+
+    public static void main(String[] args) {
+        int fields = 1_000;
+        var validator = new FormValidator();
+        List<Textbox> textboxes = new ArrayList<>();
+        for(int i = 0; i < fields; i++) {
+            var textbox = new Textbox();
+            validator.add(() -> !textbox.isEmpty(), textbox);
+            textboxes.add(textbox);
+        }
+        int[] flips = {0};
+        validator.addEventHandler(() -> flips[0]++);
+        for(int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            for(int i = 0; i < fields; i++) textboxes.get(i).setContent("value " + round);
+            textboxes.get(0).setContent("");
+            textboxes.get(0).setContent("value");
+            if(round == 9) System.out.printf("%d keystrokes on a %d-field form in %.2f ms, valid %b (%d validity changes)%n",
+                    fields + 2, fields, (System.nanoTime() - start) / 1e6, validator.isValid(), flips[0]);
+        }
+    }
+}
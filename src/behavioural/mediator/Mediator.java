@@ -17,7 +17,8 @@ package behavioural.mediator;
  *  ListBox, TextBox, Button / ColleagueA, ColleagueB, ColleagueC
  *
  * Relationships:
- *  ArticlesDialogBox extends DialogBox and implements changed(control) mediator logic between UIControls
+ *  ArticlesDialogBox extends DialogBox (through DispatchingDialogBox) and registers a handler per UIControl with the
+ *  mediator logic between UIControls, changed(control) dispatches to it
  *  ListBox, TextBox and Button is compose with a DialogBox field (owner) and calls changed(control) when his state changes.
  */
 public class Mediator {
@@ -29,24 +30,40 @@ public class Mediator {
 
 abstract class DialogBox {
     public abstract void changed(UIControl_ control);
+    // Controls apply their state changes through post(), so a mediator can run them on its own thread.
+    public void post(Runnable update) {
+        update.run();
+    }
 }
 
-class ArticlesDialogBox extends DialogBox {
+class ArticlesDialogBox extends DispatchingDialogBox {
     private ListBox listBox = new ListBox(this);
     private TextBox_ textBox = new TextBox_(this);
     private Button button = new Button(this);
+    public ArticlesDialogBox() {
+        registerHandlers();
+    }
+    public ArticlesDialogBox(int queueCapacity) {
+        super(queueCapacity);
+        registerHandlers();
+    }
+    private void registerHandlers() {
+        register(listBox, this::listBoxSelected);
+        register(textBox, this::textBoxChanged);
+    }
     public void simulateUserInteraction() {
         listBox.setSelection("Article 1");
         // textBox.setContent("");
         textBox.setContent("Article 2");
+        printState();
+    }
+    public void simulateSelection(String article) {
+        listBox.setSelection(article);
+    }
+    public void printState() {
         System.out.println("TextBox: " + textBox.getContent());
         System.out.println("Button: " + button.isEnabled());
     }
-    @Override
-    public void changed(UIControl_ control) {
-        if(control == listBox) listBoxSelected();
-        else if(control == textBox) textBoxChanged();
-    }
     private void listBoxSelected() {
         textBox.setContent(listBox.getSelection());
         button.setEnabled(true);
@@ -74,8 +91,10 @@ class ListBox extends UIControl_ {
         return selection;
     }
     public void setSelection(String selection) {
-        this.selection = selection;
-        owner.changed(this);
+        owner.post(() -> {
+            this.selection = selection;
+            owner.changed(this);
+        });
     }
 }
 
@@ -88,8 +107,10 @@ class TextBox_ extends UIControl_ {
         return content;
     }
     public void setContent(String content) {
-        this.content = content;
-        owner.changed(this);
+        owner.post(() -> {
+            this.content = content;
+            owner.changed(this);
+        });
     }
 }
 
@@ -102,7 +123,9 @@ class Button extends UIControl_ {
         return isEnabled;
     }
     public void setEnabled(boolean enabled) {
-        isEnabled = enabled;
-        owner.changed(this);
+        owner.post(() -> {
+            isEnabled = enabled;
+            owner.changed(this);
+        });
     }
 }
\ No newline at end of file
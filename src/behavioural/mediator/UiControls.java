@@ -0,0 +1,88 @@
+package behavioural.mediator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Group of UiControls whose notifications can be batched: inside a batch scope the event handlers aren't fired on
+ * every setter, they are collected (each handler once) and fired when the outermost scope closes.
+ *  try(var tx = controls.batch()) { ...setters... } // each handler runs at most once
+ * Like the controls themselves, not thread-safe: batches are used from the UI thread.
+ */
+public class UiControls {
+    private int depth;
+    private List<EventHandler> deferred = new ArrayList<>();
+    private Set<EventHandler> deferredHandlers = Collections.newSetFromMap(new IdentityHashMap<>());
+    public <T extends UiControl> T add(T control) {
+        control.setControls(this);
+        return control;
+    }
+    public Batch batch() {
+        depth++;
+        return new Batch();
+    }
+    // Returns false when no batch is open, then the control fires its handlers itself.
+    boolean defer(List<EventHandler> handlers) {
+        if(depth == 0) return false;
+        for(var handler : handlers)
+            if(deferredHandlers.add(handler)) deferred.add(handler);
+        return true;
+    }
+    private void flush() {
+        var handlers = new ArrayList<>(deferred);
+        deferred.clear();
+        deferredHandlers.clear();
+        for(var handler : handlers)
+            handler.handle();
+    }
+    public class Batch implements AutoCloseable {
+        private boolean closed;
+        @Override
+        public void close() {
+            if(closed) return;
+            closed = true;
+            if(--depth == 0) flush();
+        }
+    }
+
+    @SuppressWarnings("try")
+    public static void main(String[] args) {
+        int fields = 1_000;
+        var controls = new UiControls();
+        List<Textbox> textboxes = new ArrayList<>();
+        int[] validations = {0};
+        boolean[] valid = {false};
+        EventHandler validate = () -> {
+            validations[0]++;
+            int filled = 0;
+            for(var textbox : textboxes)
+                if(!textbox.isEmpty() && textbox.getContent().startsWith("value")) filled++;
+            valid[0] = filled == textboxes.size();
+        };
+        for(int i = 0; i < fields; i++) {
+            var textbox = controls.add(new Textbox());
+            textbox.addEventHandler(validate);
+            textboxes.add(textbox);
+        }
+        for(int round = 0; round < 10; round++) {
+            validations[0] = 0;
+            long start = System.nanoTime();
+            for(int i = 0; i < fields; i++) textboxes.get(i).setContent("value " + round);
+            long unbatched = System.nanoTime() - start;
+            int unbatchedValidations = validations[0];
+            validations[0] = 0;
+            start = System.nanoTime();
+            try(var tx = controls.batch()) {
+                for(int i = 0; i < fields; i++) textboxes.get(i).setContent("value " + round);
+            }
+            long batched = System.nanoTime() - start;
+            if(round == 9) System.out.printf("Filling %d fields: %d validations in %.2f ms, batched %d validation in %.2f ms (valid %b)%n",
+                    fields, unbatchedValidations, unbatched / 1e6, validations[0], batched / 1e6, valid[0]);
+        }
+        var singUpDialogBox = new SignUpDialogBox();
+        singUpDialogBox.fillForm("username", "password", true);
+    }
+}
@@ -0,0 +1,245 @@
+package behavioural.memento;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Caretaker storing the Editor states as diffs against the previous state instead of full copies of the content:
+ *  a state costs the size of the edit, not the size of the document.
+ *  Every keyframeInterval states a full copy (keyframe) is stored, so restoring a state replays at most
+ *  keyframeInterval - 1 diffs.
+ */
+public class DeltaHistory {
+    private TextDeltaLog log;
+    public DeltaHistory() {
+        this(32);
+    }
+    public DeltaHistory(int keyframeInterval) {
+        log = new TextDeltaLog(keyframeInterval);
+    }
+    public void push(EditorState state) {
+        log.push(state.getContent());
+    }
+    public EditorState pop() {
+        return new EditorState(log.pop());
+    }
+    public boolean isEmpty() {
+        return log.isEmpty();
+    }
+    public long retainedBytes() {
+        return log.retainedBytes();
+    }
+
+    public static void main(String[] args) {
+        int snapshots = 2_000;
+        String initial = "lorem ipsum dolor sit amet ".repeat(4_000);
+        for(int round = 0; round < 5; round++) {
+            Editor editor = new Editor();
+            History history = new History();
+            DeltaHistory deltaHistory = new DeltaHistory();
+            var random = new Random(42);
+            String content = initial;
+            long fullCopyBytes = 0;
+            for(int i = 0; i < snapshots; i++) {
+                int at = random.nextInt(content.length());
+                content = content.substring(0, at) + "edit" + i + content.substring(at);
+                editor.setContent(content);
+                history.push(editor.createState());
+                deltaHistory.push(editor.createState());
+                fullCopyBytes += TextDeltaLog.stringBytes(content) + 16;
+            }
+            long deltaBytes = deltaHistory.retainedBytes();
+            long start = System.nanoTime();
+            for(int i = 0; i < snapshots; i++) editor.restore(history.pop());
+            long fullCopyRestore = System.nanoTime() - start;
+            String fullCopyContent = editor.getContent();
+            start = System.nanoTime();
+            for(int i = 0; i < snapshots; i++) editor.restore(deltaHistory.pop());
+            long deltaRestore = System.nanoTime() - start;
+            if(round == 4) {
+                System.out.printf("%d snapshots of a ~%d KB document%n", snapshots, initial.length() / 1024);
+                System.out.printf("Full copies: %,d bytes, restore %.2f us%n", fullCopyBytes, fullCopyRestore / 1e3 / snapshots);
+                System.out.printf("Deltas:      %,d bytes, restore %.2f us (same content: %b)%n",
+                        deltaBytes, deltaRestore / 1e3 / snapshots, fullCopyContent.equals(editor.getContent()));
+            }
+        }
+        documentSnapshots(snapshots, initial);
+    }
+    // Same edits on a Document, also changing its font and attributes: each delta state must restore what the
+    // full-copy HistoryDocument restores.
+    private static void documentSnapshots(int snapshots, String initial) {
+        Document document = new Document();
+        HistoryDocument history = new HistoryDocument();
+        DeltaHistoryDocument deltaHistory = new DeltaHistoryDocument();
+        var random = new Random(42);
+        String content = initial;
+        long fullCopyBytes = 0;
+        for(int i = 0; i < snapshots; i++) {
+            int at = random.nextInt(content.length());
+            content = content.substring(0, at) + "edit" + i + content.substring(at);
+            document.setContent(content);
+            if(i % 10 == 0) document.setFontName("Font " + i % 3);
+            if(i % 7 == 0) document.setFontSize(10 + i % 5);
+            if(i % 5 == 0) document.setAttribute("attribute-" + i % 50, "value " + i);
+            history.push(document.createState());
+            deltaHistory.push(document.createState());
+            fullCopyBytes += TextDeltaLog.stringBytes(content) + 24;
+        }
+        long deltaBytes = deltaHistory.retainedBytes();
+        Document deltaDocument = new Document();
+        boolean same = true;
+        for(int i = 0; i < snapshots; i++) {
+            DocumentState expected = history.pop();
+            DocumentState state = deltaHistory.pop();
+            same &= expected.getContent().equals(state.getContent()) && Objects.equals(expected.getFontName(), state.getFontName())
+                    && expected.getFontSize() == state.getFontSize() && expected.getAttributes() == state.getAttributes();
+            deltaDocument.restore(state);
+        }
+        System.out.printf("Document: %d snapshots, full copies %,d bytes, deltas %,d bytes (same states: %b, restored %s)%n",
+                snapshots, fullCopyBytes, deltaBytes, same, deltaDocument.getContent().substring(0, 11));
+    }
+}
+
+/**
+ * Deltas from the DocumentState content, the font name, size and (persistent) attributes are stacked next to it as they
+ * are tiny or shared.
+ */
+class DeltaHistoryDocument {
+    private TextDeltaLog contents = new TextDeltaLog(32);
+    private String[] fontNames = new String[16];
+    private int[] fontSizes = new int[16];
+    private Object[] attributes = new Object[16];
+    public void push(DocumentState state) {
+        int index = contents.size();
+        if(index == fontNames.length) {
+            fontNames = Arrays.copyOf(fontNames, index * 2);
+            fontSizes = Arrays.copyOf(fontSizes, index * 2);
+            attributes = Arrays.copyOf(attributes, index * 2);
+        }
+        contents.push(state.getContent());
+        fontNames[index] = state.getFontName();
+        fontSizes[index] = state.getFontSize();
+        attributes[index] = state.getAttributes();
+    }
+    @SuppressWarnings("unchecked")
+    public DocumentState pop() {
+        String content = contents.pop();
+        int index = contents.size();
+        String fontName = fontNames[index];
+        var stateAttributes = (PersistentMap<String, String>) attributes[index];
+        fontNames[index] = null;
+        attributes[index] = null;
+        return new DocumentState(content, fontName, fontSizes[index], stateAttributes);
+    }
+    public boolean isEmpty() {
+        return contents.isEmpty();
+    }
+    public long retainedBytes() {
+        return contents.retainedBytes();
+    }
+}
+
+/**
+ * Stack of strings stored as keyframes and diffs: a diff keeps the length of the prefix and of the suffix shared with
+ * the previous string, plus the text in between in both strings (what was inserted, and what it replaced).
+ *  Popping a diff undoes it on the top string, so sequential pops cost one string copy; only popping a keyframe replays
+ *  the diffs from the keyframe before it.
+ * A null string is always stored as a keyframe.
+ */
+class TextDeltaLog {
+    private static final int KEYFRAME = -1;
+    private int keyframeInterval;
+    // Keyframe: full text and prefix KEYFRAME; diff: inserted and removed texts, prefix and suffix lengths.
+    private String[] texts = new String[16];
+    private String[] removed = new String[16];
+    private int[] prefixes = new int[16];
+    private int[] suffixes = new int[16];
+    private int size;
+    private int sinceKeyframe;
+    private String top;
+    private long bytes;
+    public TextDeltaLog(int keyframeInterval) {
+        if(keyframeInterval < 1) throw new IllegalArgumentException("Keyframe interval must be positive.");
+        this.keyframeInterval = keyframeInterval;
+    }
+    public void push(String text) {
+        if(size == texts.length) {
+            texts = Arrays.copyOf(texts, size * 2);
+            removed = Arrays.copyOf(removed, size * 2);
+            prefixes = Arrays.copyOf(prefixes, size * 2);
+            suffixes = Arrays.copyOf(suffixes, size * 2);
+        }
+        if(size == 0 || text == null || top == null || sinceKeyframe + 1 >= keyframeInterval) {
+            texts[size] = text;
+            prefixes[size] = KEYFRAME;
+            sinceKeyframe = 0;
+        } else {
+            int prefix = commonPrefix(top, text);
+            int suffix = commonSuffix(top, text, prefix);
+            texts[size] = text.substring(prefix, text.length() - suffix);
+            removed[size] = top.substring(prefix, top.length() - suffix);
+            prefixes[size] = prefix;
+            suffixes[size] = suffix;
+            sinceKeyframe++;
+        }
+        bytes += entryBytes(size);
+        size++;
+        top = text;
+    }
+    public String pop() {
+        if(size == 0) throw new EmptyStackException();
+        String text = top;
+        size--;
+        bytes -= entryBytes(size);
+        if(size == 0) top = null;
+        else if(prefixes[size] == KEYFRAME) top = materialize(size - 1);
+        else top = new StringBuilder(top).replace(prefixes[size], top.length() - suffixes[size], removed[size]).toString();
+        texts[size] = null;
+        removed[size] = null;
+        sinceKeyframe = size == 0 ? 0 : size - 1 - keyframeAtOrBefore(size - 1);
+        return text;
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    public long retainedBytes() {
+        return bytes;
+    }
+    private long entryBytes(int index) {
+        return stringBytes(texts[index]) + stringBytes(removed[index]) + 8;
+    }
+    private int keyframeAtOrBefore(int index) {
+        while(prefixes[index] != KEYFRAME) index--;
+        return index;
+    }
+    private String materialize(int index) {
+        int keyframe = keyframeAtOrBefore(index);
+        if(keyframe == index) return texts[index];
+        var text = new StringBuilder(texts[keyframe]);
+        for(int i = keyframe + 1; i <= index; i++)
+            text.replace(prefixes[i], text.length() - suffixes[i], texts[i]);
+        return text.toString();
+    }
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while(i < max && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+    // The suffix doesn't overlap the prefix in either string.
+    private static int commonSuffix(String a, String b, int prefix) {
+        int max = Math.min(a.length(), b.length()) - prefix;
+        int i = 0;
+        while(i < max && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) i++;
+        return i;
+    }
+    // Rough heap footprint of a string: header, array header and one byte per (latin-1) char.
+    static long stringBytes(String text) {
+        return text == null || text.isEmpty() ? 0 : 40 + text.length();
+    }
+}
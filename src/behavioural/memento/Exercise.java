@@ -1,7 +1,12 @@
 package behavioural.memento;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 public class Exercise {
     public static void main(String[] args) {
@@ -24,31 +29,55 @@ class Document {
     private String content;
     private String fontName;
     private int fontSize;
+    // Persistent: a state captures the map itself, never a copy of the attributes.
+    private PersistentMap<String, String> attributes = PersistentMap.empty();
+    // Reused until the document changes, DocumentState being immutable.
+    private DocumentState lastState;
     public DocumentState createState() {
-        return new DocumentState(content, fontName, fontSize);
+        if(lastState == null) lastState = new DocumentState(content, fontName, fontSize, attributes);
+        return lastState;
     }
     public void restore(DocumentState state) {
         content = state.getContent();
         fontName = state.getFontName();
         fontSize = state.getFontSize();
+        attributes = state.getAttributes();
+        lastState = state;
     }
     public String getContent() {
         return content;
     }
     public void setContent(String content) {
         this.content = content;
+        lastState = null;
     }
     public String getFontName() {
         return fontName;
     }
     public void setFontName(String fontName) {
         this.fontName = fontName;
+        lastState = null;
     }
     public int getFontSize() {
         return fontSize;
     }
     public void setFontSize(int fontSize) {
         this.fontSize = fontSize;
+        lastState = null;
+    }
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+    public void setAttribute(String name, String value) {
+        setAttributes(attributes.put(name, value));
+    }
+    public void removeAttribute(String name) {
+        setAttributes(attributes.remove(name));
+    }
+    private void setAttributes(PersistentMap<String, String> attributes) {
+        if(attributes == this.attributes) return;
+        this.attributes = attributes;
+        lastState = null;
     }
     @Override
     public String toString() {
@@ -61,13 +90,18 @@ class Document {
 }
 
 class DocumentState {
-    private String content;
-    private String fontName;
-    private int fontSize;
+    private final String content;
+    private final String fontName;
+    private final int fontSize;
+    private final PersistentMap<String, String> attributes;
     public DocumentState(String content, String fontName, int fontSize) {
+        this(content, fontName, fontSize, PersistentMap.empty());
+    }
+    public DocumentState(String content, String fontName, int fontSize, PersistentMap<String, String> attributes) {
         this.content = content;
         this.fontName = fontName;
         this.fontSize = fontSize;
+        this.attributes = attributes;
     }
     public String getContent() {
         return content;
@@ -78,14 +112,72 @@ class DocumentState {
     public int getFontSize() {
         return fontSize;
     }
+    public PersistentMap<String, String> getAttributes() {
+        return attributes;
+    }
 }
 
+/**
+ * States are stored by column (parallel arrays of content, font id, font size and attributes) instead of one object
+ * per state, font names being interned into a small id table.
+ *  Identical consecutive states are stored once with a repeat count: pop() still returns one state per push().
+ */
 class HistoryDocument {
-    private Deque<DocumentState> states = new ArrayDeque<>();
+    private static final int NO_FONT = -1;
+    private String[] contents = new String[16];
+    private int[] fontIds = new int[16];
+    private int[] fontSizes = new int[16];
+    private Object[] attributes = new Object[16];
+    private int[] repeats = new int[16];
+    private int size;
+    private List<String> fontNames = new ArrayList<>();
+    private Map<String, Integer> fontIdsByName = new HashMap<>();
     public void push(DocumentState state) {
-        states.push(state);
-    }
+        int fontId = fontId(state.getFontName());
+        int top = size - 1;
+        if(size > 0 && fontIds[top] == fontId && fontSizes[top] == state.getFontSize()
+                && attributes[top] == state.getAttributes() && Objects.equals(contents[top], state.getContent())) {
+            repeats[top]++;
+            return;
+        }
+        if(size == contents.length) {
+            contents = Arrays.copyOf(contents, size * 2);
+            fontIds = Arrays.copyOf(fontIds, size * 2);
+            fontSizes = Arrays.copyOf(fontSizes, size * 2);
+            attributes = Arrays.copyOf(attributes, size * 2);
+            repeats = Arrays.copyOf(repeats, size * 2);
+        }
+        contents[size] = state.getContent();
+        fontIds[size] = fontId;
+        fontSizes[size] = state.getFontSize();
+        attributes[size] = state.getAttributes();
+        repeats[size] = 1;
+        size++;
+    }
+    @SuppressWarnings("unchecked")
     public DocumentState pop() {
-        return states.pop();
+        if(size == 0) throw new NoSuchElementException();
+        int top = size - 1;
+        var state = new DocumentState(contents[top], fontIds[top] == NO_FONT ? null : fontNames.get(fontIds[top]), fontSizes[top],
+                (PersistentMap<String, String>) attributes[top]);
+        if(--repeats[top] == 0) {
+            contents[top] = null;
+            attributes[top] = null;
+            size--;
+        }
+        return state;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    public int getDistinctCount() {
+        return size;
+    }
+    private int fontId(String fontName) {
+        if(fontName == null) return NO_FONT;
+        return fontIdsByName.computeIfAbsent(fontName, name -> {
+            fontNames.add(name);
+            return fontNames.size() - 1;
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package behavioural.memento;
+
+/**
+ * Memory of the HistoryDocument checkpoints (i.e. autosave) while the document changes every 100 checkpoints only:
+ * unchanged states are neither allocated by Document.createState() nor stored again by the history.
+ */
+public class HistoryDocumentBenchmark {
+    public static void main(String[] args) {
+        int count = 5_000_000;
+        Document document = new Document();
+        HistoryDocument history = new HistoryDocument();
+        document.setFontName("Font 1");
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for(int i = 0; i < count; i++) {
+            if(i % 100 == 0) document.setContent("Hello " + i);
+            if(i % 1_000 == 0) document.setFontSize(i % 20_000 / 1_000);
+            history.push(document.createState());
+        }
+        System.gc();
+        long used = runtime.totalMemory() - runtime.freeMemory() - before;
+        System.out.printf("%,d checkpoints: %d distinct states, ~%.1f bytes per checkpoint%n",
+                count, history.getDistinctCount(), (double) used / count);
+        int popped = 0;
+        while(!history.isEmpty()) {
+            document.restore(history.pop());
+            popped++;
+        }
+        System.out.println("Popped " + popped + " states, back to " + document);
+    }
+}
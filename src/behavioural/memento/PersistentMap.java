@@ -0,0 +1,270 @@
+package behavioural.memento;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable (persistent) map, a hash array mapped trie: put and remove return a new map sharing everything but the
+ * path to the changed entry (at most 7 small nodes) with the old one. Keeping a version is O(1), so a memento can
+ * capture the map itself instead of copying it.
+ *  Each node maps 5 bits of the key hash to its entries or children through a 32-bit bitmap (the arrays stay dense),
+ *  keys with the same hash end in a collision node. Null keys and values aren't allowed.
+ */
+public final class PersistentMap<K, V> {
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+    private static final Object NOT_FOUND = new Object();
+    private final BitmapNode root;
+    private final int size;
+    private PersistentMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Object value = root.find(key, hash(key), 0);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+    public boolean containsKey(K key) {
+        return root.find(key, hash(key), 0) != NOT_FOUND;
+    }
+    // Returns this map when the key already has this value.
+    public PersistentMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(value);
+        boolean[] added = new boolean[1];
+        BitmapNode newRoot = root.put(key, value, hash(key), 0, added);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+    // Returns this map when there's no such key.
+    public PersistentMap<K, V> remove(K key) {
+        Node newRoot = root.remove(key, hash(key), 0);
+        if(newRoot == root) return this;
+        return newRoot == null ? empty() : new PersistentMap<>((BitmapNode) newRoot, size - 1);
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private interface Node {
+        Object find(Object key, int hash, int shift);
+        // Returns this node when nothing changed, sets added[0] when a new key was added.
+        Node put(Object key, Object value, int hash, int shift, boolean[] added);
+        // Returns this node when the key isn't found, null when the node becomes empty.
+        Node remove(Object key, int hash, int shift);
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    // array: key, value for an entry, null, child for a sub-trie; in the order of the bitmap bits.
+    private static final class BitmapNode implements Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        private final int bitmap;
+        private final Object[] array;
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if((bitmap & bit) == 0) return NOT_FOUND;
+            int i = index(bit);
+            Object k = array[i];
+            if(k == null) return ((Node) array[i + 1]).find(key, hash, shift + 5);
+            return key.equals(k) ? array[i + 1] : NOT_FOUND;
+        }
+        @Override
+        public BitmapNode put(Object key, Object value, int hash, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(array, i, copy, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if(k == null) {
+                Node child = (Node) v;
+                Node newChild = child.put(key, value, hash, shift + 5, added);
+                return newChild == child ? this : with(i, null, newChild);
+            }
+            if(key.equals(k)) return value.equals(v) ? this : with(i, k, value);
+            added[0] = true;
+            return with(i, null, pair(k, v, hash(k), key, value, hash, shift + 5));
+        }
+        private static Node pair(Object key1, Object value1, int hash1, Object key2, Object value2, int hash2, int shift) {
+            if(hash1 == hash2) return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            boolean[] added = new boolean[1];
+            return EMPTY.put(key1, value1, hash1, shift, added).put(key2, value2, hash2, shift, added);
+        }
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if((bitmap & bit) == 0) return this;
+            int i = index(bit);
+            Object k = array[i];
+            if(k == null) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.remove(key, hash, shift + 5);
+                if(newChild == child) return this;
+                if(newChild == null) return without(bit, i);
+                // A child left with a single entry is pulled up, so the trie doesn't keep useless levels.
+                if(newChild instanceof BitmapNode node && node.array.length == 2 && node.array[0] != null)
+                    return with(i, node.array[0], node.array[1]);
+                return with(i, null, newChild);
+            }
+            return key.equals(k) ? without(bit, i) : this;
+        }
+        private BitmapNode without(int bit, int i) {
+            if(array.length == 2) return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for(int i = 0; i < array.length; i += 2) {
+                if(array[i] == null) ((Node) array[i + 1]).forEach(action);
+                else action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+    // Keys whose whole hash is the same, searched linearly.
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+        private int indexOf(Object key) {
+            for(int i = 0; i < array.length; i += 2)
+                if(key.equals(array[i])) return i;
+            return -1;
+        }
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+        @Override
+        public Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if(hash != this.hash) {
+                var node = new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[] {null, this});
+                return node.put(key, value, hash, shift, added);
+            }
+            int i = indexOf(key);
+            if(i >= 0) {
+                if(value.equals(array[i + 1])) return this;
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] copy = Arrays.copyOf(array, array.length + 2);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if(i < 0) return this;
+            if(array.length == 4) {
+                int other = i == 0 ? 2 : 0;
+                return new BitmapNode(BitmapNode.bit(hash, shift), new Object[] {array[other], array[other + 1]});
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new CollisionNode(hash, copy);
+        }
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for(int i = 0; i < array.length; i += 2) action.accept(array[i], array[i + 1]);
+        }
+    }
+
+    public static void main(String[] args) {
+        int attributes = 1_000;
+        int snapshots = 1_000;
+        // More persistent snapshots are kept, a few hundred bytes each would be lost in the gc noise.
+        int persistentSnapshots = 50 * snapshots;
+        for(int round = 0; round < 5; round++) {
+            boolean report = round == 4;
+            Map<String, String> eager = new HashMap<>();
+            Document document = new Document();
+            for(int i = 0; i < attributes; i++) {
+                eager.put("attribute-" + i, "value");
+                document.setAttribute("attribute-" + i, "value");
+            }
+            Runtime runtime = Runtime.getRuntime();
+            List<Object> kept = new ArrayList<>(persistentSnapshots);
+            System.gc();
+            long memory = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            for(int i = 0; i < snapshots; i++) {
+                eager.put("attribute-" + i % attributes, "value " + i);
+                kept.add(new HashMap<>(eager));
+            }
+            long copyTime = System.nanoTime() - start;
+            System.gc();
+            long copyMemory = runtime.totalMemory() - runtime.freeMemory() - memory;
+            kept.clear();
+            System.gc();
+            memory = runtime.totalMemory() - runtime.freeMemory();
+            start = System.nanoTime();
+            for(int i = 0; i < persistentSnapshots; i++) {
+                document.setAttribute("attribute-" + i % attributes, "value " + i);
+                kept.add(document.createState());
+            }
+            long persistentTime = System.nanoTime() - start;
+            System.gc();
+            long persistentMemory = runtime.totalMemory() - runtime.freeMemory() - memory;
+            document.restore((DocumentState) kept.get(0));
+            if(report) {
+                System.out.printf("Snapshots of %d attributes, one changed between snapshots%n", attributes);
+                System.out.printf("HashMap copy:   %.2f us and %,d bytes per snapshot%n", copyTime / 1e3 / snapshots, copyMemory / snapshots);
+                System.out.printf("Persistent map: %.2f us and %,d bytes per snapshot (restored attribute-1: %s)%n",
+                        persistentTime / 1e3 / persistentSnapshots, persistentMemory / persistentSnapshots, document.getAttribute("attribute-1"));
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package behavioural.memento;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EmptyStackException;
+
+/**
+ * History (caretaker) with a heap budget: the most recent states are kept on the heap, once they take more than the
+ * budget the oldest ones are serialized (by a StateCodec) to a memory-mapped spill file. They are read back only when
+ * pop() reaches them, most recent first.
+ *  close() spills the states still on the heap, so opening the same file again recovers the whole undo history.
+ * File: header (magic:int, count:int, end:long), then records (length:int, body, length:int). The trailing length
+ * lets pop() find the last record, the header is updated after the record is written.
+ */
+public class SpillingHistory<S> implements AutoCloseable {
+    private static final int MAGIC = 0x48495354; // "HIST"
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private StateCodec<S> codec;
+    private long heapBudget;
+    private Deque<S> recent = new ArrayDeque<>();
+    private long heapBytes;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int spilled;
+    private int end;
+    public SpillingHistory(Path file, long heapBudget, StateCodec<S> codec) throws IOException {
+        this.heapBudget = heapBudget;
+        this.codec = codec;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, channel.size()));
+        int magic = buffer.getInt(0);
+        if(magic == MAGIC) {
+            spilled = buffer.getInt(4);
+            end = (int) buffer.getLong(8);
+        } else if(magic == 0) {
+            buffer.putInt(0, MAGIC);
+            updateHeader(0, HEADER_SIZE);
+        } else {
+            channel.close();
+            throw new IOException(file + " isn't a history file.");
+        }
+    }
+    public void push(S state) {
+        recent.push(state);
+        heapBytes += codec.heapBytes(state);
+        while(heapBytes > heapBudget && !recent.isEmpty()) {
+            S oldest = recent.removeLast();
+            heapBytes -= codec.heapBytes(oldest);
+            spill(oldest);
+        }
+    }
+    public S pop() {
+        if(!recent.isEmpty()) {
+            S state = recent.pop();
+            heapBytes -= codec.heapBytes(state);
+            return state;
+        }
+        if(spilled == 0) throw new EmptyStackException();
+        int length = buffer.getInt(end - 4);
+        int start = end - 8 - length;
+        byte[] body = new byte[length];
+        buffer.get(start + 4, body);
+        updateHeader(spilled - 1, start);
+        try {
+            return codec.read(new DataInputStream(new ByteArrayInputStream(body)));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    public boolean isEmpty() {
+        return recent.isEmpty() && spilled == 0;
+    }
+    public int size() {
+        return recent.size() + spilled;
+    }
+    public int getSpilledCount() {
+        return spilled;
+    }
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+    public long getSpilledBytes() {
+        return end - HEADER_SIZE;
+    }
+    private void spill(S state) {
+        try {
+            var bytes = new ByteArrayOutputStream();
+            codec.write(state, new DataOutputStream(bytes));
+            byte[] body = bytes.toByteArray();
+            ensureCapacity(end + 8 + body.length);
+            buffer.putInt(end, body.length);
+            buffer.put(end + 4, body);
+            buffer.putInt(end + 4 + body.length, body.length);
+            updateHeader(spilled + 1, end + 8 + body.length);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    private void ensureCapacity(long capacity) throws IOException {
+        if(capacity <= buffer.capacity()) return;
+        if(capacity > Integer.MAX_VALUE) throw new IOException("History file full.");
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(Integer.MAX_VALUE, Math.max(capacity, 2L * buffer.capacity())));
+    }
+    private void updateHeader(int count, int end) {
+        buffer.putLong(8, end);
+        buffer.putInt(4, count);
+        spilled = count;
+        this.end = end;
+    }
+    @Override
+    public void close() throws IOException {
+        if(!channel.isOpen()) return;
+        while(!recent.isEmpty()) spill(recent.removeLast());
+        heapBytes = 0;
+        buffer.force();
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("editor-history", ".bin");
+        Files.delete(file);
+        int states = 5_000;
+        String text = "lorem ipsum dolor sit amet ".repeat(400);
+        Editor editor = new Editor();
+        try(var history = new SpillingHistory<>(file, 1 << 20, StateCodec.EDITOR)) {
+            for(int i = 0; i < states; i++) {
+                editor.setContent(i + ": " + text);
+                history.push(editor.createState());
+            }
+            System.out.printf("%d states of %d chars: %d on the heap (%,d bytes), %d spilled (%,d bytes)%n",
+                    states, text.length(), history.size() - history.getSpilledCount(), history.getHeapBytes(),
+                    history.getSpilledCount(), history.getSpilledBytes());
+            for(int i = 0; i < 100; i++) editor.restore(history.pop());
+            System.out.println("After 100 undos: " + editor.getContent().substring(0, 10));
+        }
+        try(var history = new SpillingHistory<>(file, 1 << 20, StateCodec.EDITOR)) {
+            System.out.println("Recovered " + history.size() + " states");
+            long start = System.nanoTime();
+            int restored = 0;
+            while(!history.isEmpty()) {
+                editor.restore(history.pop());
+                restored++;
+            }
+            System.out.printf("Undid %d states from disk in %.2f us each, now: %s%n",
+                    restored, (System.nanoTime() - start) / 1e3 / restored, editor.getContent().substring(0, 10));
+        }
+        Files.delete(file);
+    }
+}
+
+/**
+ * Serializes states for SpillingHistory, and estimates what they cost on the heap.
+ */
+interface StateCodec<S> {
+    StateCodec<EditorState> EDITOR = new StateCodec<>() {
+        @Override
+        public void write(EditorState state, DataOutputStream out) throws IOException {
+            writeString(state.getContent(), out);
+        }
+        @Override
+        public EditorState read(DataInputStream in) throws IOException {
+            return new EditorState(readString(in));
+        }
+        @Override
+        public long heapBytes(EditorState state) {
+            return 16 + stringBytes(state.getContent());
+        }
+    };
+    StateCodec<DocumentState> DOCUMENT = new StateCodec<>() {
+        @Override
+        public void write(DocumentState state, DataOutputStream out) throws IOException {
+            writeString(state.getContent(), out);
+            writeString(state.getFontName(), out);
+            out.writeInt(state.getFontSize());
+            out.writeInt(state.getAttributes().size());
+            var failure = new IOException[1];
+            state.getAttributes().forEach((name, value) -> {
+                try {
+                    writeString(name, out);
+                    writeString(value, out);
+                } catch(IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if(failure[0] != null) throw failure[0];
+        }
+        @Override
+        public DocumentState read(DataInputStream in) throws IOException {
+            String content = readString(in);
+            String fontName = readString(in);
+            int fontSize = in.readInt();
+            PersistentMap<String, String> attributes = PersistentMap.empty();
+            for(int count = in.readInt(); count > 0; count--) attributes = attributes.put(readString(in), readString(in));
+            return new DocumentState(content, fontName, fontSize, attributes);
+        }
+        // The attributes aren't counted: they are mostly shared with the other states.
+        @Override
+        public long heapBytes(DocumentState state) {
+            return 32 + stringBytes(state.getContent()) + stringBytes(state.getFontName());
+        }
+    };
+    void write(S state, DataOutputStream out) throws IOException;
+    S read(DataInputStream in) throws IOException;
+    long heapBytes(S state);
+    // UTF-8 with an int length (writeUTF is limited to 64 KB), -1 for null.
+    static void writeString(String text, DataOutputStream out) throws IOException {
+        if(text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    static long stringBytes(String text) {
+        return text == null ? 0 : 40 + text.length();
+    }
+}
@@ -0,0 +1,285 @@
+package behavioural.observer;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Async observers: registered on a DataSource like any observer, the dispatcher publishes each value to Flow
+ * subscribers instead of calling them inline. Every subscriber has its own bounded queue and thread, so a slow one
+ * (i.e. a Chart) neither blocks setValue() nor delays the others (i.e. a SpreadSheet).
+ *  When a queue is full the subscriber's overflow policy applies: BLOCK waits for room (the producer is slowed down),
+ *  DROP_OLDEST replaces the oldest pending value (the subscriber only needs the latest), DROP_NEWEST skips the value.
+ *  Each subscription exposes its lag (values waiting in its queue) and counts of delivered and dropped values.
+ * Values are delivered as requested by the subscriber (Flow demand). close() completes the subscribers once they got
+ * the values queued for them, except the ones they didn't request: these are dropped, so close() never waits on a
+ * subscriber's demand.
+ */
+public class AsyncDispatcher implements Flow.Publisher<Integer>, IObserver, AutoCloseable {
+    public enum Overflow { BLOCK, DROP_OLDEST, DROP_NEWEST }
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private DataSource dataSource;
+    private Subject.Registration registration;
+    private List<QueuedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+    public AsyncDispatcher(DataSource dataSource) {
+        this.dataSource = dataSource;
+        registration = dataSource.addObserver(this);
+    }
+    @Override
+    public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+        subscribe(subscriber, 256, Overflow.BLOCK);
+    }
+    public Subscription subscribe(Flow.Subscriber<? super Integer> subscriber, int capacity, Overflow overflow) {
+        var subscription = new QueuedSubscription(subscriber, capacity, overflow);
+        if(closed) {
+            subscription.reject(new IllegalStateException("Dispatcher closed."));
+            return subscription;
+        }
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+    // Push style observer, called on its own thread with each queued value (a pull style observer would read the
+    // DataSource from that thread, getting the latest value instead of the queued one).
+    public Subscription subscribe(IntConsumer observer, int capacity, Overflow overflow) {
+        return subscribe(new Flow.Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+            @Override
+            public void onNext(Integer value) {
+                observer.accept(value);
+            }
+            // The failure is kept by the subscription (getError()).
+            @Override
+            public void onError(Throwable throwable) {}
+            @Override
+            public void onComplete() {}
+        }, capacity, overflow);
+    }
+    @Override
+    public void update() {
+        int value = dataSource.getValue();
+        for(QueuedSubscription subscription : subscriptions) subscription.offer(value);
+    }
+    // Waits until the subscribers received (or dropped) the values published so far; stops waiting if interrupted.
+    @Override
+    public void close() {
+        closed = true;
+        registration.cancel();
+        for(QueuedSubscription subscription : subscriptions) subscription.complete();
+        try {
+            for(QueuedSubscription subscription : subscriptions) subscription.awaitTermination();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public interface Subscription extends Flow.Subscription {
+        long getLag();
+        long getDelivered();
+        long getDropped();
+        // The exception thrown by the subscriber (then cancelled), or null.
+        Throwable getError();
+    }
+
+    private class QueuedSubscription implements Subscription {
+        private Flow.Subscriber<? super Integer> subscriber;
+        private Overflow overflow;
+        private BlockingQueue<Integer> queue;
+        private ExecutorService executor;
+        private AtomicInteger pendingDrains = new AtomicInteger();
+        private AtomicLong demand = new AtomicLong();
+        private LongAdder dropped = new LongAdder();
+        private volatile long delivered;
+        private volatile boolean completed;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private boolean terminated;
+        private CountDownLatch termination = new CountDownLatch(1);
+        QueuedSubscription(Flow.Subscriber<? super Integer> subscriber, int capacity, Overflow overflow) {
+            this.subscriber = subscriber;
+            this.overflow = overflow;
+            queue = new ArrayBlockingQueue<>(capacity);
+            executor = Executors.newSingleThreadExecutor(task -> {
+                var thread = new Thread(task, "observer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // Values offered before the subscriber requests any wait in the queue, request() drains them.
+        void start() {
+            executor.execute(() -> subscriber.onSubscribe(this));
+        }
+        // The subscriber gets onSubscribe then onError, no values.
+        void reject(Throwable error) {
+            this.error = error;
+            cancelled = true;
+            start();
+            scheduleDrain();
+        }
+        void offer(Integer value) {
+            if(cancelled) return;
+            switch(overflow) {
+                case BLOCK -> {
+                    try {
+                        // Bounded wait, so a cancelled subscription doesn't hold the producer forever.
+                        while(!queue.offer(value, 10, TimeUnit.MILLISECONDS))
+                            if(cancelled) return;
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.increment();
+                        return;
+                    }
+                }
+                case DROP_OLDEST -> {
+                    while(!queue.offer(value))
+                        if(queue.poll() != null) dropped.increment();
+                }
+                case DROP_NEWEST -> {
+                    if(!queue.offer(value)) {
+                        dropped.increment();
+                        return;
+                    }
+                }
+            }
+            scheduleDrain();
+        }
+        void complete() {
+            completed = true;
+            scheduleDrain();
+        }
+        void awaitTermination() throws InterruptedException {
+            termination.await();
+        }
+        private void scheduleDrain() {
+            if(pendingDrains.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch(RuntimeException e) {
+                    pendingDrains.set(0); // executor shut down by cancel()
+                }
+            }
+        }
+        // Runs on the subscriber's thread only: delivers while there's demand, then completes once drained.
+        private void drain() {
+            int missed = 1;
+            do {
+                while(!cancelled && demand.get() > 0) {
+                    Integer value = queue.poll();
+                    if(value == null) break;
+                    if(demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                    delivered++;
+                    try {
+                        subscriber.onNext(value);
+                    } catch(RuntimeException e) {
+                        error = e;
+                        cancelled = true;
+                        subscriptions.remove(this);
+                    }
+                }
+                // A failed subscription (see request() and reject()) is signalled here, after the values delivered.
+                if(cancelled) {
+                    if(error != null) subscriber.onError(error);
+                    terminate();
+                    return;
+                }
+                // Completing doesn't need demand: values left (not requested) are dropped.
+                if(completed && (queue.isEmpty() || demand.get() == 0)) {
+                    subscriber.onComplete();
+                    terminate();
+                    return;
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while(missed != 0);
+        }
+        private void terminate() {
+            if(terminated) return;
+            terminated = true;
+            dropped.add(queue.size());
+            queue.clear();
+            termination.countDown();
+            executor.shutdown();
+        }
+        @Override
+        public void request(long n) {
+            if(cancelled) return;
+            if(n <= 0) {
+                error = new IllegalArgumentException("Non-positive request: " + n);
+                cancel();
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            scheduleDrain();
+        }
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            scheduleDrain();
+        }
+        @Override
+        public long getLag() {
+            return queue.size();
+        }
+        @Override
+        public long getDelivered() {
+            return delivered;
+        }
+        @Override
+        public long getDropped() {
+            return dropped.sum();
+        }
+        @Override
+        public Throwable getError() {
+            return error;
+        }
+    }
+
+    public static void main(String[] args) {
+        var dataSource = new DataSource();
+        try(var dispatcher = new AsyncDispatcher(dataSource)) {
+            dispatcher.subscribe(value -> System.out.println("SpreadSheet got updated: " + value), 16, Overflow.BLOCK);
+            dispatcher.subscribe(value -> System.out.println("Chart got updated: " + value), 16, Overflow.BLOCK);
+            dataSource.setValue(1);
+        }
+
+        dataSource = new DataSource();
+        var spreadSheetUpdates = new LongAdder();
+        IntConsumer spreadSheet = value -> spreadSheetUpdates.increment();
+        IntConsumer slowChart = value -> {
+            try {
+                Thread.sleep(1); // rendering
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        int values = 200_000;
+        Subscription spreadSheetSubscription, chartSubscription;
+        long start, published;
+        try(var dispatcher = new AsyncDispatcher(dataSource)) {
+            spreadSheetSubscription = dispatcher.subscribe(spreadSheet, 1_024, Overflow.BLOCK);
+            chartSubscription = dispatcher.subscribe(slowChart, 16, Overflow.DROP_OLDEST);
+            start = System.nanoTime();
+            for(int i = 0; i < values; i++) dataSource.setValue(i);
+            published = System.nanoTime() - start;
+            System.out.printf("Published %d values in %.1f ms, lag: spreadsheet %d, chart %d%n", values, published / 1e6,
+                    spreadSheetSubscription.getLag(), chartSubscription.getLag());
+        }
+        System.out.printf("SpreadSheet: %d delivered, %d dropped; Chart: %d delivered, %d dropped (%.1f ms in total)%n",
+                spreadSheetSubscription.getDelivered(), spreadSheetSubscription.getDropped(),
+                chartSubscription.getDelivered(), chartSubscription.getDropped(), (System.nanoTime() - start) / 1e6);
+    }
+}
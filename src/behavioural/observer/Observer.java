@@ -1,7 +1,6 @@
 package behavioural.observer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Observer Pattern: similar to publish/subscribe pattern, solves the problem of the need of listening to state changes.
@@ -48,14 +47,67 @@ interface IObserver {
     void update();
 }
 
+/**
+ * Thread-safe: observers are kept in an immutable array of registrations published through a volatile field, replaced
+ * (copy-on-write) when an observer is added. Notifying walks the current array without locking or allocating:
+ * observers added meanwhile (even by an update()) get the next notifications, while a cancelled observer is skipped
+ * at once, including later in the notification being walked.
+ *  Removing cancels the registration returned by addObserver: O(1), the array is compacted once more than half of it
+ *  is cancelled registrations.
+ */
 class Subject {
-    private List<IObserver> observers = new ArrayList<>();
-    public void addObserver(IObserver observer) { observers.add(observer); }
-    public void removeObserver(IObserver observer) { observers.remove(observer); }
+    private static final Registration[] NONE = new Registration[0];
+    private volatile Registration[] registrations = NONE;
+    private int cancelled;
+    public synchronized Registration addObserver(IObserver observer) {
+        var registration = new Registration(this, observer);
+        Registration[] copy = Arrays.copyOf(registrations, registrations.length + 1);
+        copy[copy.length - 1] = registration;
+        registrations = copy;
+        return registration;
+    }
+    // O(n), prefer cancelling the registration.
+    public void removeObserver(IObserver observer) {
+        for(Registration registration : registrations) {
+            if(registration.observer == observer && registration.isActive()) {
+                registration.cancel();
+                return;
+            }
+        }
+    }
     public void notifyObservers() { // Push style gets value
-        for(IObserver observer : observers) {
+        for(Registration registration : registrations) {
             // observer.update(value); // Push style
-            observer.update();
+            if(registration.active) registration.observer.update();
+        }
+    }
+    private synchronized void cancel(Registration registration) {
+        if(!registration.active) return;
+        registration.active = false;
+        if(++cancelled * 2 > registrations.length) compact();
+    }
+    private void compact() {
+        Registration[] active = new Registration[registrations.length - cancelled];
+        int count = 0;
+        for(Registration registration : registrations)
+            if(registration.active) active[count++] = registration;
+        registrations = active;
+        cancelled = 0;
+    }
+
+    public static final class Registration {
+        private final Subject subject;
+        private final IObserver observer;
+        private volatile boolean active = true;
+        private Registration(Subject subject, IObserver observer) {
+            this.subject = subject;
+            this.observer = observer;
+        }
+        public boolean isActive() {
+            return active;
+        }
+        public void cancel() {
+            subject.cancel(this);
         }
     }
 }
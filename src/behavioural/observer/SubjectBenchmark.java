@@ -0,0 +1,74 @@
+package behavioural.observer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the copy-on-write Subject: notifications while another thread adds and cancels observers, an observer
+ * cancelling itself from update(), bytes allocated per notification and the cost of a cancel.
+ */
+public class SubjectBenchmark {
+    private static class Counter implements IObserver {
+        private long updates;
+        @Override
+        public void update() {
+            updates++;
+        }
+        public long getUpdates() {
+            return updates;
+        }
+    }
+    public static void main(String[] args) throws InterruptedException {
+        var dataSource = new DataSource();
+        List<Counter> counters = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            var counter = new Counter();
+            dataSource.addObserver(counter);
+            counters.add(counter);
+        }
+        var churn = new Thread(() -> {
+            while(!Thread.currentThread().isInterrupted()) dataSource.addObserver(() -> {}).cancel();
+        });
+        churn.start();
+        int notifications = 1_000_000;
+        for(int i = 0; i < notifications; i++) dataSource.setValue(i);
+        churn.interrupt();
+        churn.join();
+        boolean allUpdated = counters.stream().allMatch(counter -> counter.getUpdates() == notifications);
+        System.out.println(notifications + " notifications while observers were added and cancelled, all updated: " + allUpdated);
+
+        var once = new Counter() {
+            private Subject.Registration registration = dataSource.addObserver(this);
+            @Override
+            public void update() {
+                super.update();
+                registration.cancel();
+            }
+        };
+        dataSource.setValue(1);
+        dataSource.setValue(2);
+        System.out.println("Observer cancelling itself in update() got " + once.getUpdates() + " update");
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for(int round = 0; round < 3; round++) {
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for(int i = 0; i < notifications; i++) dataSource.notifyObservers();
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+            if(round == 2) System.out.printf("Notifying %d observers: %.2f ns and %.3f bytes allocated per notification%n",
+                    counters.size(), (double) time / notifications, (double) allocated / notifications);
+        }
+
+        int observers = 100_000;
+        var subject = new Subject();
+        List<Subject.Registration> registrations = new ArrayList<>(observers);
+        for(int i = 0; i < observers; i++) registrations.add(subject.addObserver(() -> {}));
+        long start = System.nanoTime();
+        for(int i = observers - 1; i >= 0; i -= 2) registrations.get(i).cancel();
+        for(int i = observers - 2; i >= 0; i -= 2) registrations.get(i).cancel();
+        System.out.printf("Cancelling %d observers: %.1f ns each%n", observers, (double) (System.nanoTime() - start) / observers);
+    }
+}